@@ -2,6 +2,7 @@ package org.jenkins_cli.plugins.ifdtms;
 
 import hidden.jth.org.apache.http.HttpStatus;
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Publisher;
@@ -11,26 +12,59 @@ import hudson.util.Secret;
 import jenkins.model.Jenkins;
 
 import org.jenkins_cli.plugins.ifdtms.model.AuthenticationInfo;
+import org.jenkins_cli.plugins.ifdtms.rest.ItmsEndpoints;
 import org.jenkins_cli.plugins.ifdtms.rest.RequestApi;
+import org.jenkins_cli.plugins.ifdtms.rest.RequestLimiter;
 import org.jenkins_cli.plugins.ifdtms.rest.StandardResponse;
+import org.jenkins_cli.plugins.ifdtms.rest.TransportTimeouts;
+import org.jenkins_cli.plugins.ifdtms.util.ExpiringCache;
 import org.jenkins_cli.plugins.ifdtms.util.UrlValidator;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.verb.POST;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
 
 
 @Extension
+@Symbol("publishItmsReport")
 public final class CucumberGlobalConfiguration extends BuildStepDescriptor<Publisher> {
 
+    private static final Logger LOGGER = Logger.getLogger(CucumberGlobalConfiguration.class.getName());
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    // Longest the address check of a form waits for the server, whatever the connect timeout of the uploads.
+    private static final int URL_CHECK_TIMEOUT_MILLIS = Integer.getInteger(
+            CucumberGlobalConfiguration.class.getName() + ".urlCheckTimeoutMillis", 5000);
+
+    // Form validations reach iTMS, repeated checks of the same values are answered from here.
+    private static final ExpiringCache<FormValidation> VALIDATIONS = new ExpiringCache<>(
+            Integer.getInteger(CucumberGlobalConfiguration.class.getName() + ".validationCacheSize", 1000),
+            Long.getLong(CucumberGlobalConfiguration.class.getName() + ".validationCacheMillis",
+                    TimeUnit.SECONDS.toMillis(60)));
+
     private String itmsServer;
     private Secret username;
     private Secret token;
+    private String uploadCompression = COMPRESSION_NONE;
+    private int maxRequestsPerSecond = DEFAULT_MAX_REQUESTS_PER_SECOND;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private String itmsNodes;
+    private int connectTimeoutSeconds = DEFAULT_CONNECT_TIMEOUT_SECONDS;
+    private int readTimeoutSeconds = DEFAULT_READ_TIMEOUT_SECONDS;
+    private int requestTimeoutSeconds = DEFAULT_REQUEST_TIMEOUT_SECONDS;
     private AuthenticationInfo authenticationInfo = new AuthenticationInfo();
 
     /**
@@ -40,6 +74,8 @@ public final class CucumberGlobalConfiguration extends BuildStepDescriptor<Publi
     public CucumberGlobalConfiguration() {
         super(CucumberPostBuild.class);
         load();
+        RequestLimiter.configure(getMaxRequestsPerSecond(), getMaxInFlightRequests());
+        ItmsEndpoints.configure(getItmsNodeList());
     }
 
     @Override
@@ -51,9 +87,22 @@ public final class CucumberGlobalConfiguration extends BuildStepDescriptor<Publi
         itmsServer = formData.getString(ITMS_SERVER_PARAM);
         username = Secret.fromString(formData.getString(USER_NAME_PARAM));
         token = Secret.fromString(formData.getString(TOKEN_PARAM));
+        uploadCompression = formData.optString(UPLOAD_COMPRESSION_PARAM, COMPRESSION_NONE);
+        maxRequestsPerSecond = formData.optInt(MAX_REQUESTS_PER_SECOND_PARAM, DEFAULT_MAX_REQUESTS_PER_SECOND);
+        maxInFlightRequests = formData.optInt(MAX_IN_FLIGHT_REQUESTS_PARAM, DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+        itmsNodes = Util.fixEmptyAndTrim(formData.optString(ITMS_NODES_PARAM));
+        connectTimeoutSeconds = formData.optInt(CONNECT_TIMEOUT_SECONDS_PARAM, DEFAULT_CONNECT_TIMEOUT_SECONDS);
+        readTimeoutSeconds = formData.optInt(READ_TIMEOUT_SECONDS_PARAM, DEFAULT_READ_TIMEOUT_SECONDS);
+        requestTimeoutSeconds = formData.optInt(REQUEST_TIMEOUT_SECONDS_PARAM, DEFAULT_REQUEST_TIMEOUT_SECONDS);
 
         authenticationInfo.setUsername(username);
         authenticationInfo.setToken(token);
+        RequestLimiter.configure(getMaxRequestsPerSecond(), getMaxInFlightRequests());
+        ItmsEndpoints.configure(getItmsNodeList());
+        VALIDATIONS.invalidateAll();
+        CycleResolver.invalidateAll();
+        ReportUploader.invalidateBatchRejections();
+        RequestApi.invalidateGzipRejections();
         save();
         return super.configure(req, formData);
     }
@@ -109,7 +158,7 @@ public final class CucumberGlobalConfiguration extends BuildStepDescriptor<Publi
             return FormValidation.error("Please enter the iTMS server address");
         }
 
-        if (!UrlValidator.isValidUrl(itmsAddress)) {
+        if (!isReachable(itmsAddress)) {
             return FormValidation.error("This value is not a valid url!");
         }
 
@@ -146,7 +195,7 @@ public final class CucumberGlobalConfiguration extends BuildStepDescriptor<Publi
             return FormValidation.error("Please enter the iTMS server address");
         }
 
-        if (!UrlValidator.isValidUrl(itmsAddress)) {
+        if (!isReachable(itmsAddress)) {
             return FormValidation.error("This value is not a valid url!");
         }
 
@@ -162,24 +211,73 @@ public final class CucumberGlobalConfiguration extends BuildStepDescriptor<Publi
             return FormValidation.error("Please enter the iTMS cycle name!");
         }
 
-        JSONObject postData = new JSONObject();
-        postData.put(USER_NAME_PARAM, authenticationInfo.getUsername());
-        postData.put(SERVICE_NAME_PARAM, SERVICE_NAME);
-        postData.put(PROJECT_NAME_PARAM, jiraProjectKey);
-        postData.put(TICKET_KEY_PARAM, jiraTicketKey);
-        postData.put(CYCLE_NAME_PARAM, itmsCycleName);
-        
-        String itmsCheckUrl = itmsAddress.substring(0, itmsAddress.lastIndexOf("/"));
-        itmsCheckUrl += "/validate_jenkins_job_configuration";
+        String username = authenticationInfo.getUsername();
+        String token = authenticationInfo.getToken();
+        String key = "configuration\n" + itmsAddress + '\n' + jiraProjectKey + '\n' + jiraTicketKey
+                + '\n' + itmsCycleName + '\n' + Util.getDigestOf(username + '\n' + token);
+        return validate(key, () -> {
+            JSONObject postData = new JSONObject();
+            postData.put(USER_NAME_PARAM, username);
+            postData.put(SERVICE_NAME_PARAM, SERVICE_NAME);
+            postData.put(PROJECT_NAME_PARAM, jiraProjectKey);
+            postData.put(TICKET_KEY_PARAM, jiraTicketKey);
+            postData.put(CYCLE_NAME_PARAM, itmsCycleName);
+
+            String itmsCheckUrl = itmsAddress.substring(0, itmsAddress.lastIndexOf("/"));
+            itmsCheckUrl += "/validate_jenkins_job_configuration";
+
+            RequestApi request = new RequestApi();
+            StandardResponse response = request.sendPostRequestToItms(itmsCheckUrl, token, postData);
+
+            if (response.getCode() == HttpStatus.SC_OK) {
+                return FormValidation.ok(response.getMessage());
+            }
+            if (isDefinite(response.getCode())) {
+                return FormValidation.error(response.getMessage());
+            }
+            // The server could not tell, the next check asks again.
+            throw new UncachedValidation(FormValidation.error(response.getMessage()));
+        });
+    }
 
-        RequestApi request = new RequestApi();
-        StandardResponse response = request.sendPostRequestToItms(itmsCheckUrl, authenticationInfo.getToken(), postData);
+    private boolean isReachable(String itmsAddress) {
+        long connectMillis = getTransportTimeouts().getConnectMillis();
+        int timeoutMillis = connectMillis > 0 ? (int) Math.min(connectMillis, URL_CHECK_TIMEOUT_MILLIS)
+                : URL_CHECK_TIMEOUT_MILLIS;
+        FormValidation reachable = validate("url\n" + itmsAddress, () -> {
+            if (UrlValidator.isValidUrl(itmsAddress, timeoutMillis)) {
+                return FormValidation.ok();
+            }
+            if (!UrlValidator.isWellFormed(itmsAddress)) {
+                return FormValidation.error(itmsAddress);
+            }
+            // Well formed but not answering, it may be up again on the next check.
+            throw new UncachedValidation(FormValidation.error(itmsAddress));
+        });
+        return reachable.kind == FormValidation.Kind.OK;
+    }
 
-        if (response.getCode() != HttpStatus.SC_OK) {
-            return FormValidation.error(response.getMessage());
-        }
+    /**
+     * @return whether the server refused the values themselves, as opposed to failing to check them.
+     */
+    private static boolean isDefinite(int responseCode) {
+        return responseCode >= HttpStatus.SC_BAD_REQUEST && responseCode < HttpStatus.SC_INTERNAL_SERVER_ERROR
+                && responseCode != HttpStatus.SC_REQUEST_TIMEOUT && responseCode != HTTP_TOO_MANY_REQUESTS;
+    }
 
-        return FormValidation.ok(response.getMessage());
+    private static FormValidation validate(String key, Callable<FormValidation> check) {
+        try {
+            return VALIDATIONS.get(key, check);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncachedValidation) {
+                return ((UncachedValidation) e.getCause()).validation;
+            }
+            LOGGER.log(Level.WARNING, "Failed to validate the iTMS configuration", e.getCause());
+            return FormValidation.error(e.getCause(), "Failed to validate the iTMS configuration");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FormValidation.error("Interrupted while validating the iTMS configuration");
+        }
     }
 
     public ListBoxModel doFillReportFormatItems(@QueryParameter String reportFormat) {
@@ -190,6 +288,32 @@ public final class CucumberGlobalConfiguration extends BuildStepDescriptor<Publi
         return m;
     }
 
+    public ListBoxModel doFillCucumberEmbeddingsItems() {
+        ListBoxModel m = new ListBoxModel();
+        m.add(EMBEDDINGS_KEEP);
+        m.add(EMBEDDINGS_DROP);
+        m.add(EMBEDDINGS_CAP);
+        m.add(EMBEDDINGS_LINK);
+        return m;
+    }
+
+    public ListBoxModel doFillJunitOutputModeItems() {
+        ListBoxModel m = new ListBoxModel();
+        m.add(OUTPUT_KEEP);
+        m.add(OUTPUT_TRUNCATE);
+        m.add(OUTPUT_STRIP);
+        return m;
+    }
+
+    public ListBoxModel doFillUploadCompressionItems() {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        ListBoxModel m = new ListBoxModel();
+        m.add(COMPRESSION_NONE);
+        m.add(COMPRESSION_GZIP);
+        m.add(COMPRESSION_AUTO);
+        return m;
+    }
+
     public String getItmsServer() {
         return itmsServer;
     }
@@ -202,7 +326,71 @@ public final class CucumberGlobalConfiguration extends BuildStepDescriptor<Publi
         return Secret.toString(token);
     }
 
+    public String getUploadCompression() {
+        return uploadCompression != null ? uploadCompression : COMPRESSION_NONE;
+    }
+
+    public int getMaxRequestsPerSecond() {
+        return Math.max(0, maxRequestsPerSecond);
+    }
+
+    public int getMaxInFlightRequests() {
+        return Math.max(0, maxInFlightRequests);
+    }
+
+    public String getItmsNodes() {
+        return itmsNodes;
+    }
+
+    /**
+     * @return the base URLs of the equivalent iTMS nodes, one per line in the configuration.
+     */
+    public List<String> getItmsNodeList() {
+        List<String> nodes = new ArrayList<>();
+        if (itmsNodes != null) {
+            for (String node : itmsNodes.split("[\\s,]+")) {
+                if (!node.isEmpty()) {
+                    nodes.add(node);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    public int getConnectTimeoutSeconds() {
+        return Math.max(0, connectTimeoutSeconds);
+    }
+
+    public int getReadTimeoutSeconds() {
+        return Math.max(0, readTimeoutSeconds);
+    }
+
+    public int getRequestTimeoutSeconds() {
+        return Math.max(0, requestTimeoutSeconds);
+    }
+
+    /**
+     * @return the time budgets of each report request.
+     */
+    public TransportTimeouts getTransportTimeouts() {
+        return new TransportTimeouts(TimeUnit.SECONDS.toMillis(getConnectTimeoutSeconds()),
+                TimeUnit.SECONDS.toMillis(getReadTimeoutSeconds()),
+                TimeUnit.SECONDS.toMillis(getRequestTimeoutSeconds()));
+    }
+
     public AuthenticationInfo getAuthenticationInfo() {
         return authenticationInfo;
     }
-}
\ No newline at end of file
+
+    /**
+     * Result of a check that is shown but not cached.
+     */
+    private static class UncachedValidation extends Exception {
+        private final FormValidation validation;
+
+        private UncachedValidation(FormValidation validation) {
+            super(validation.getMessage(), null, false, false);
+            this.validation = validation;
+        }
+    }
+}
@@ -1,26 +1,39 @@
 package org.jenkins_cli.plugins.ifdtms;
 
-import hidden.jth.org.apache.http.HttpStatus;
 import hudson.FilePath;
+import hudson.Util;
 import hudson.Launcher;
-import hudson.model.AbstractBuild;
+import hudson.matrix.MatrixAggregatable;
+import hudson.matrix.MatrixAggregator;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
 import hudson.model.BuildListener;
 import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Notifier;
+import jenkins.tasks.SimpleBuildStep;
 import org.jenkins_cli.plugins.ifdtms.model.AuthenticationInfo;
-import org.jenkins_cli.plugins.ifdtms.rest.RequestApi;
-import org.jenkins_cli.plugins.ifdtms.rest.StandardResponse;
+import org.jenkins_cli.plugins.ifdtms.model.ReportProcessingOptions;
+import org.jenkins_cli.plugins.ifdtms.model.UploadSummary;
+import org.jenkins_cli.plugins.ifdtms.util.UploadMetrics;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
+import javax.annotation.Nonnull;
 import java.io.*;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
 
-public class CucumberPostBuild extends Notifier {
+/**
+ * Uploads the reports of a build to iTMS, as a post-build action or as the {@code publishItmsReport}
+ * Pipeline step.
+ */
+public class CucumberPostBuild extends Notifier implements SimpleBuildStep, MatrixAggregatable {
 
     private final String itmsAddress;
     private final String reportFolder;
@@ -28,6 +41,23 @@ public class CucumberPostBuild extends Notifier {
     private final String jiraProjectKey;
     private final String jiraTicketKey;
     private final String itmsCycleName;
+    private int uploadThreads = DEFAULT_UPLOAD_THREADS;
+    private boolean uploadFromAgent;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int batchMaxKilobytes = DEFAULT_BATCH_MAX_KILOBYTES;
+    private boolean skipUnchangedReports;
+    private boolean asyncUpload;
+    private String junitOutputMode = OUTPUT_KEEP;
+    private int junitOutputMaxChars = DEFAULT_OUTPUT_MAX_CHARS;
+    private boolean junitFailuresOnly;
+    private String cucumberEmbeddings = EMBEDDINGS_KEEP;
+    private int embeddingMaxKilobytes = DEFAULT_EMBEDDING_MAX_KILOBYTES;
+    private int splitReportKilobytes;
+    private String reportIncludes;
+    private String reportExcludes;
+    private boolean onlyNewReports;
+    private boolean aggregateMatrixUploads;
+    private int uploadTimeoutMinutes;
 
     @DataBoundConstructor
     public CucumberPostBuild(final String itmsAddress, final String reportFolder,
@@ -42,16 +72,14 @@ public class CucumberPostBuild extends Notifier {
     }
 
     @Override
-    public boolean perform(final AbstractBuild build, final Launcher launcher, final BuildListener listener) {
+    public void perform(@Nonnull Run<?, ?> build, @Nonnull FilePath workspace, @Nonnull Launcher launcher,
+                        @Nonnull TaskListener listener) {
+        listener.getLogger().println("Starting " + PLUGIN_NAME + " post build action..");
+        publish(build, workspace, listener);
+    }
+
+    private void publish(Run<?, ?> build, FilePath workspace, TaskListener listener) {
         try {
-            listener.getLogger().println("Starting " + PLUGIN_NAME + " post build action..");
-            
-            FilePath workspace = build.getWorkspace();
-            if (workspace == null) {
-            	listener.getLogger().println("The provided build has no workspace");
-            	return false;
-            }
-            
             FilePath hudsonFile;
             if(workspace.isRemote()) {
                 VirtualChannel vc = workspace.getChannel();
@@ -63,21 +91,41 @@ public class CucumberPostBuild extends Notifier {
                 hudsonFile = new FilePath(local);
             }
             
-            String fileSuffix = reportFormat.equals(JSON_FORMAT) ? ".json" : ".xml";
-            FilePath[] reportFiles = hudsonFile.list("**/*" + fileSuffix);
-            
-            int counter = 0;
-            for(FilePath filePath : reportFiles) {
-            	counter++;
-                listener.getLogger().println("Read report file: " + filePath.getName());
-                String content = filePath.readToString();
-                listener.getLogger().println("---------Start sending report content-------");
-                listener.getLogger().println(sendReportContent(filePath, build));
-                listener.getLogger().println("---------End--------");
-                
+            ReportScanner scanner = getReportScanner(build);
+            long discoveryStart = System.currentTimeMillis();
+            ReportDiscoveryCallable.DiscoveredReports discovered = hudsonFile.act(new ReportDiscoveryCallable(scanner));
+            FilePath[] reportFiles = new FilePath[discovered.getReportPaths().size()];
+            for (int i = 0; i < reportFiles.length; i++) {
+                reportFiles[i] = hudsonFile.child(discovered.getReportPaths().get(i));
             }
-            if (counter == 0) {
+            long discoveryMillis = System.currentTimeMillis() - discoveryStart;
+            UploadMetrics.recordDiscovery(discoveryMillis, reportFiles.length);
+            if (discovered.getStaleReports() > 0) {
+                listener.getLogger().println("Skipped " + discovered.getStaleReports()
+                        + " report file(s) not modified since the build started");
+            }
+            
+            if (reportFiles.length == 0) {
                 listener.getLogger().println("Report file not found! Check your report folder and format type");
+            } else if (aggregateMatrixUploads && build instanceof MatrixRun) {
+                MatrixBuild matrixBuild = ((MatrixRun) build).getParentBuild();
+                ItmsMatrixAggregator.handOver((MatrixRun) build, hudsonFile, scanner);
+                listener.getLogger().println("Handed " + reportFiles.length + " report file(s) over to "
+                        + matrixBuild.getFullDisplayName() + ", they are uploaded with those of the other configurations");
+            } else if (asyncUpload) {
+                String spoolName = UploadSpool.create(build, this, hudsonFile, scanner);
+                ItmsUploadAction.forSpool(build, spoolName).setDiscoveryMillis(discoveryMillis);
+                UploadSpoolDispatcher.get().submit(build, spoolName);
+                listener.getLogger().println("Queued " + reportFiles.length + " report file(s) for background upload, see "
+                        + UploadSpool.getUploadLog(build).getName() + " in the build directory for progress");
+            } else {
+                ItmsUploadAction action = ItmsUploadAction.create(build);
+                action.setDiscoveryMillis(discoveryMillis);
+                UploadSummary summary = new ReportUploader(this, build, hudsonFile, listener)
+                        .recordInto(action)
+                        .upload(reportFiles);
+                action.finish(summary);
+                action.printSummary(listener.getLogger());
             }
         }
         catch (Exception e) {
@@ -85,7 +133,6 @@ public class CucumberPostBuild extends Notifier {
         }
         
         listener.getLogger().println("Finished " + PLUGIN_NAME + " post build action");
-        return true;
     }
 
     public BuildStepMonitor getRequiredMonitorService() {
@@ -98,54 +145,39 @@ public class CucumberPostBuild extends Notifier {
     }
 
 
-    private StandardResponse prepareRequestContent(String fileName, String reportContent, AbstractBuild build) {
-
-        if (build != null) {
-            AuthenticationInfo authenticationInfo = getDescriptor().getAuthenticationInfo();
-            boolean isJsonReport = reportFormat.equals(JSON_FORMAT) ? Boolean.TRUE : Boolean.FALSE;
-
-            Map<String, String> postData = new HashMap<>();
-            postData.put(USER_NAME_PARAM, authenticationInfo.getUsername());
-            postData.put(SERVICE_NAME_PARAM, SERVICE_NAME);
-            postData.put(PROJECT_NAME_PARAM, jiraProjectKey);
-            postData.put(ATTRIBUTE_BUILD_NUM_PARAM, String.valueOf(build.number));
-
-            if (build.getResult() == Result.SUCCESS) {
-                postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "success");
-            } else if (build.getResult() == Result.FAILURE) {
-                postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "failure");
-            } else if (build.getResult() == Result.UNSTABLE) {
-                postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "unstable");
-            } else if (build.getResult() == Result.NOT_BUILT) {
-                postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "not_build");
-            } else {
-                postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "aborted");
-            }
-
-            postData.put(ATTRIBUTE_USER_PARAM, authenticationInfo.getUsername());
-            postData.put(ATTRIBUTE_REPORT_TYPE_PARAM, reportFormat);
-            postData.put(TICKET_KEY_PARAM, jiraTicketKey);
-            postData.put(CYCLE_NAME_PARAM, itmsCycleName);
-            postData.put(IS_JSON_PARAM, String.valueOf(isJsonReport));
+    Map<String, String> prepareRequestContent(Run<?, ?> build, AuthenticationInfo authenticationInfo,
+                                              boolean isJsonReport) {
+        Map<String, String> postData = new HashMap<>();
+        postData.put(USER_NAME_PARAM, authenticationInfo.getUsername());
+        postData.put(SERVICE_NAME_PARAM, SERVICE_NAME);
+        postData.put(PROJECT_NAME_PARAM, jiraProjectKey);
+        postData.put(ATTRIBUTE_BUILD_NUM_PARAM, String.valueOf(build.number));
 
-            RequestApi requestApi = new RequestApi();
-            return requestApi.sendReportToITMS(itmsAddress, authenticationInfo.getToken(),
-            		postData, fileName, reportContent, isJsonReport);
+        // A Pipeline publishes while it runs, before it has a result.
+        Result result = build.getResult();
+        if (result == null) {
+            result = Result.SUCCESS;
+        }
+        if (result == Result.SUCCESS) {
+            postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "success");
+        } else if (result == Result.FAILURE) {
+            postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "failure");
+        } else if (result == Result.UNSTABLE) {
+            postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "unstable");
+        } else if (result == Result.NOT_BUILT) {
+            postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "not_build");
         } else {
-            return new StandardResponse(HttpStatus.SC_BAD_REQUEST, "error", "error");
+            postData.put(ATTRIBUTE_BUILD_STATUS_PARAM, "aborted");
         }
 
+        postData.put(ATTRIBUTE_USER_PARAM, authenticationInfo.getUsername());
+        postData.put(ATTRIBUTE_REPORT_TYPE_PARAM, reportFormat);
+        postData.put(TICKET_KEY_PARAM, jiraTicketKey);
+        postData.put(CYCLE_NAME_PARAM, itmsCycleName);
+        postData.put(IS_JSON_PARAM, String.valueOf(isJsonReport));
+        return postData;
     }
 
-    private String sendReportContent(FilePath filePath, AbstractBuild build) throws IOException, InterruptedException {
-        String reportContent = filePath.readToString().trim();
-    	if (reportContent != null && !reportContent.isEmpty()) {
-            StandardResponse response = prepareRequestContent(filePath.getName(), reportContent, build);
-            return PLUGIN_NAME+ " response: " + response.getMessage();
-        }
-        return filePath.getName() + " is empty!";
-    }
-    
     public String getItmsAddress() {
         return itmsAddress;
     }
@@ -169,4 +201,176 @@ public class CucumberPostBuild extends Notifier {
     public String getJiraProjectKey() {
         return jiraProjectKey;
     }
+
+    public int getUploadThreads() {
+        // Configurations saved before this setting existed deserialize it as 0.
+        return uploadThreads > 0 ? uploadThreads : DEFAULT_UPLOAD_THREADS;
+    }
+
+    @DataBoundSetter
+    public void setUploadThreads(int uploadThreads) {
+        this.uploadThreads = Math.max(1, Math.min(uploadThreads, MAX_UPLOAD_THREADS));
+    }
+
+    public boolean isUploadFromAgent() {
+        return uploadFromAgent;
+    }
+
+    @DataBoundSetter
+    public void setUploadFromAgent(boolean uploadFromAgent) {
+        this.uploadFromAgent = uploadFromAgent;
+    }
+
+    public int getBatchSize() {
+        return batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+
+    @DataBoundSetter
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+    }
+
+    public int getBatchMaxKilobytes() {
+        return batchMaxKilobytes > 0 ? batchMaxKilobytes : DEFAULT_BATCH_MAX_KILOBYTES;
+    }
+
+    @DataBoundSetter
+    public void setBatchMaxKilobytes(int batchMaxKilobytes) {
+        this.batchMaxKilobytes = Math.max(1, batchMaxKilobytes);
+    }
+
+    public boolean isSkipUnchangedReports() {
+        return skipUnchangedReports;
+    }
+
+    @DataBoundSetter
+    public void setSkipUnchangedReports(boolean skipUnchangedReports) {
+        this.skipUnchangedReports = skipUnchangedReports;
+    }
+
+    public boolean isAsyncUpload() {
+        return asyncUpload;
+    }
+
+    @DataBoundSetter
+    public void setAsyncUpload(boolean asyncUpload) {
+        this.asyncUpload = asyncUpload;
+    }
+
+    public String getJunitOutputMode() {
+        return junitOutputMode != null ? junitOutputMode : OUTPUT_KEEP;
+    }
+
+    @DataBoundSetter
+    public void setJunitOutputMode(String junitOutputMode) {
+        this.junitOutputMode = junitOutputMode;
+    }
+
+    public int getJunitOutputMaxChars() {
+        return junitOutputMaxChars > 0 ? junitOutputMaxChars : DEFAULT_OUTPUT_MAX_CHARS;
+    }
+
+    @DataBoundSetter
+    public void setJunitOutputMaxChars(int junitOutputMaxChars) {
+        this.junitOutputMaxChars = junitOutputMaxChars;
+    }
+
+    public boolean isJunitFailuresOnly() {
+        return junitFailuresOnly;
+    }
+
+    @DataBoundSetter
+    public void setJunitFailuresOnly(boolean junitFailuresOnly) {
+        this.junitFailuresOnly = junitFailuresOnly;
+    }
+
+    public String getCucumberEmbeddings() {
+        return cucumberEmbeddings != null ? cucumberEmbeddings : EMBEDDINGS_KEEP;
+    }
+
+    @DataBoundSetter
+    public void setCucumberEmbeddings(String cucumberEmbeddings) {
+        this.cucumberEmbeddings = cucumberEmbeddings;
+    }
+
+    public int getEmbeddingMaxKilobytes() {
+        return embeddingMaxKilobytes > 0 ? embeddingMaxKilobytes : DEFAULT_EMBEDDING_MAX_KILOBYTES;
+    }
+
+    @DataBoundSetter
+    public void setEmbeddingMaxKilobytes(int embeddingMaxKilobytes) {
+        this.embeddingMaxKilobytes = embeddingMaxKilobytes;
+    }
+
+    public int getSplitReportKilobytes() {
+        return splitReportKilobytes;
+    }
+
+    @DataBoundSetter
+    public void setSplitReportKilobytes(int splitReportKilobytes) {
+        this.splitReportKilobytes = splitReportKilobytes;
+    }
+
+    public String getReportIncludes() {
+        return reportIncludes;
+    }
+
+    @DataBoundSetter
+    public void setReportIncludes(String reportIncludes) {
+        this.reportIncludes = Util.fixEmptyAndTrim(reportIncludes);
+    }
+
+    public String getReportExcludes() {
+        return reportExcludes;
+    }
+
+    @DataBoundSetter
+    public void setReportExcludes(String reportExcludes) {
+        this.reportExcludes = Util.fixEmptyAndTrim(reportExcludes);
+    }
+
+    public boolean isOnlyNewReports() {
+        return onlyNewReports;
+    }
+
+    @DataBoundSetter
+    public void setOnlyNewReports(boolean onlyNewReports) {
+        this.onlyNewReports = onlyNewReports;
+    }
+
+    public boolean isAggregateMatrixUploads() {
+        return aggregateMatrixUploads;
+    }
+
+    @DataBoundSetter
+    public void setAggregateMatrixUploads(boolean aggregateMatrixUploads) {
+        this.aggregateMatrixUploads = aggregateMatrixUploads;
+    }
+
+    public int getUploadTimeoutMinutes() {
+        return uploadTimeoutMinutes;
+    }
+
+    @DataBoundSetter
+    public void setUploadTimeoutMinutes(int uploadTimeoutMinutes) {
+        this.uploadTimeoutMinutes = Math.max(0, uploadTimeoutMinutes);
+    }
+
+    @Override
+    public MatrixAggregator createAggregator(MatrixBuild build, Launcher launcher, BuildListener listener) {
+        return aggregateMatrixUploads ? new ItmsMatrixAggregator(build, launcher, listener, this) : null;
+    }
+
+    ReportScanner getReportScanner(Run<?, ?> build) {
+        String fileSuffix = reportFormat.equals(JSON_FORMAT) ? ".json" : ".xml";
+        String includes = reportIncludes != null ? reportIncludes : "**/*" + fileSuffix;
+        long maxAgeMillis = onlyNewReports
+                ? Math.max(0, System.currentTimeMillis() - build.getStartTimeInMillis()) : -1;
+        return new ReportScanner(includes, reportExcludes, maxAgeMillis);
+    }
+
+    ReportProcessingOptions getProcessingOptions() {
+        return new ReportProcessingOptions(getJunitOutputMode(), getJunitOutputMaxChars(), junitFailuresOnly,
+                getCucumberEmbeddings(), getEmbeddingMaxKilobytes(), Math.max(0, splitReportKilobytes));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.jenkins_cli.plugins.ifdtms.model.AuthenticationInfo;
+import org.jenkins_cli.plugins.ifdtms.model.Cycle;
+import org.jenkins_cli.plugins.ifdtms.model.TestCycle;
+import org.jenkins_cli.plugins.ifdtms.rest.RequestApi;
+import org.jenkins_cli.plugins.ifdtms.rest.StandardResponse;
+import org.jenkins_cli.plugins.ifdtms.rest.TransportTimeouts;
+import org.jenkins_cli.plugins.ifdtms.util.ExpiringCache;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Looks up the iTMS cycle of a job, creating it if needed, so that the uploads name the cycle
+ * by id instead of having iTMS find it by name for every report. Ids are kept on the controller
+ * for a while and concurrent lookups of the same cycle share one request, so parallel builds
+ * never create the same cycle twice.
+ */
+final class CycleResolver {
+
+    private static final Logger LOGGER = Logger.getLogger(CycleResolver.class.getName());
+
+    private static final String PREFIX = CycleResolver.class.getName();
+    private static final boolean ENABLED = !Boolean.getBoolean(PREFIX + ".disabled");
+    // Cycle -> its id, empty when the server does not resolve cycles.
+    private static final ExpiringCache<String> CYCLE_IDS = new ExpiringCache<>(
+            Integer.getInteger(PREFIX + ".cacheSize", 1000),
+            Long.getLong(PREFIX + ".cacheMillis", TimeUnit.MINUTES.toMillis(10)));
+
+    private CycleResolver() {
+    }
+
+    /**
+     * @return the id of the cycle, null when the uploads have to name the cycle instead.
+     */
+    static String resolve(CucumberPostBuild publisher, AuthenticationInfo authenticationInfo,
+                          TransportTimeouts timeouts) throws InterruptedException {
+        if (!ENABLED) {
+            return null;
+        }
+        String key = publisher.getItmsAddress() + '\n' + publisher.getJiraProjectKey() + '\n'
+                + publisher.getJiraTicketKey() + '\n' + publisher.getItmsCycleName();
+        try {
+            String id = CYCLE_IDS.get(key, () -> lookUp(publisher, authenticationInfo, timeouts));
+            return id.isEmpty() ? null : id;
+        } catch (ExecutionException e) {
+            // Not cached, the next build tries again.
+            LOGGER.log(Level.FINE, "Failed to resolve the iTMS cycle " + publisher.getItmsCycleName(), e.getCause());
+            return null;
+        }
+    }
+
+    static void invalidateAll() {
+        CYCLE_IDS.invalidateAll();
+    }
+
+    private static String lookUp(CucumberPostBuild publisher, AuthenticationInfo authenticationInfo,
+                                 TransportTimeouts timeouts) throws IOException {
+        JSONObject postData = new JSONObject();
+        postData.put(USER_NAME_PARAM, authenticationInfo.getUsername());
+        postData.put(SERVICE_NAME_PARAM, SERVICE_NAME);
+        postData.put(PROJECT_NAME_PARAM, publisher.getJiraProjectKey());
+        postData.put(TICKET_KEY_PARAM, publisher.getJiraTicketKey());
+        postData.put(CYCLE_NAME_PARAM, publisher.getItmsCycleName());
+
+        String itmsAddress = publisher.getItmsAddress();
+        String cycleUrl = itmsAddress.substring(0, itmsAddress.lastIndexOf("/")) + "/find_or_create_jenkins_test_cycle";
+        StandardResponse response = new RequestApi().withTimeouts(timeouts)
+                .sendPostRequestToItms(cycleUrl, authenticationInfo.getToken(), postData);
+        if (response.getCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            // An iTMS server without cycle lookups, the uploads keep naming the cycle.
+            return "";
+        }
+        if (response.getCode() != HttpURLConnection.HTTP_OK && response.getCode() != HttpURLConnection.HTTP_CREATED) {
+            throw new IOException("Cycle lookup failed with " + response.getCode() + ": " + response.getType());
+        }
+
+        for (TestCycle testCycle : parse(response.getMessage()).getTestCycle()) {
+            if (publisher.getItmsCycleName().equals(testCycle.getName()) && !testCycle.getId().isEmpty()) {
+                return testCycle.getId();
+            }
+        }
+        throw new IOException("Cycle " + publisher.getItmsCycleName() + " missing from the response of iTMS");
+    }
+
+    private static Cycle parse(String body) throws IOException {
+        List<TestCycle> testCycles = new ArrayList<>();
+        try {
+            JSONArray entries = JSONObject.fromObject(body).optJSONArray("testCycle");
+            for (int i = 0; entries != null && i < entries.size(); i++) {
+                JSONObject entry = entries.getJSONObject(i);
+                TestCycle testCycle = new TestCycle();
+                testCycle.setId(entry.optString("id"));
+                testCycle.setName(entry.optString("name"));
+                testCycle.setBuild(entry.optString("build"));
+                testCycles.add(testCycle);
+            }
+        } catch (JSONException e) {
+            throw new IOException("Malformed cycle response from iTMS", e);
+        }
+        Cycle cycle = new Cycle();
+        cycle.setTestCycle(testCycles);
+        return cycle;
+    }
+}
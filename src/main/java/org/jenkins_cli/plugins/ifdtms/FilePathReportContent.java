@@ -0,0 +1,51 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.FilePath;
+import org.jenkins_cli.plugins.ifdtms.rest.ReportContent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Streams a report straight out of a (possibly remote) workspace.
+ */
+class FilePathReportContent implements ReportContent {
+
+    private final FilePath filePath;
+
+    FilePathReportContent(FilePath filePath) {
+        this.filePath = filePath;
+    }
+
+    @Override
+    public InputStream open() throws IOException {
+        try {
+            return filePath.read();
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    @Override
+    public long getLength() throws IOException {
+        try {
+            return filePath.length();
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    @Override
+    public File getFile() {
+        return filePath.isRemote() ? null : new File(filePath.getRemote());
+    }
+
+    private static IOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException ioe = new InterruptedIOException("Interrupted while reading report file");
+        ioe.initCause(e);
+        return ioe;
+    }
+}
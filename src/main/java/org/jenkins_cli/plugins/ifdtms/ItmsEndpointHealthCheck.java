@@ -0,0 +1,53 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import org.jenkins_cli.plugins.ifdtms.rest.ItmsEndpoints;
+import org.jenkins_cli.plugins.ifdtms.rest.RequestApi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks the iTMS nodes of the global configuration in the background, so that uploads
+ * skip a node that is down or restarting before a request to it has to fail.
+ */
+@Extension
+public class ItmsEndpointHealthCheck extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(ItmsEndpointHealthCheck.class.getName());
+    private static final long PERIOD_SECONDS = Long.getLong(ItmsEndpointHealthCheck.class.getName() + ".periodSeconds", 30);
+    private static final int TIMEOUT_MILLIS = Integer.getInteger(ItmsEndpointHealthCheck.class.getName() + ".timeoutMillis",
+            (int) TimeUnit.SECONDS.toMillis(5));
+
+    public ItmsEndpointHealthCheck() {
+        super("iTMS node health check");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.SECONDS.toMillis(PERIOD_SECONDS);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        RequestApi requestApi = new RequestApi();
+        for (ItmsEndpoints.Endpoint endpoint : ItmsEndpoints.getEndpoints()) {
+            int responseCode = requestApi.probe(endpoint.getServer(), TIMEOUT_MILLIS);
+            // Any answer but a server error means the node is up, its root page may well be a redirect or a 404.
+            boolean healthy = responseCode > 0 && responseCode < 500;
+            if (healthy != endpoint.isHealthCheckPassed()) {
+                LOGGER.log(healthy ? Level.INFO : Level.WARNING, "iTMS node {0} is {1} (response code {2})",
+                        new Object[]{endpoint.getServer(), healthy ? "up" : "down", responseCode});
+            }
+            endpoint.setHealthCheckPassed(healthy);
+        }
+    }
+
+    @Override
+    protected Level getNormalLoggingLevel() {
+        return Level.FINE;
+    }
+}
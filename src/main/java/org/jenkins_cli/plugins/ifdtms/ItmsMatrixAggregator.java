@@ -0,0 +1,102 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.matrix.MatrixAggregator;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
+import hudson.model.BuildListener;
+import hudson.util.DirScanner;
+import org.jenkins_cli.plugins.ifdtms.model.UploadSummary;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the reports of the configurations of a matrix build and uploads them in one
+ * submission once they are all done, instead of one submission per configuration.
+ * Reports with the same content in several configurations are sent once.
+ */
+class ItmsMatrixAggregator extends MatrixAggregator {
+
+    private static final String AGGREGATE_DIR = "itms-matrix-reports";
+
+    private final CucumberPostBuild publisher;
+
+    ItmsMatrixAggregator(MatrixBuild build, Launcher launcher, BuildListener listener, CucumberPostBuild publisher) {
+        super(build, launcher, listener);
+        this.publisher = publisher;
+    }
+
+    /**
+     * Copies the reports of a configuration into the matrix build, in a folder of their own.
+     */
+    static void handOver(MatrixRun run, FilePath reportRoot, DirScanner reports)
+            throws IOException, InterruptedException {
+        String configuration = run.getParent().getCombination().toString(',', '=');
+        File target = new File(getAggregateDir(run.getParentBuild()), configuration);
+        reportRoot.copyRecursiveTo(reports, new FilePath(target), "iTMS reports");
+    }
+
+    private static File getAggregateDir(MatrixBuild build) {
+        return new File(build.getRootDir(), AGGREGATE_DIR);
+    }
+
+    @Override
+    public boolean endBuild() throws InterruptedException, IOException {
+        File aggregateDir = getAggregateDir(build);
+        if (!aggregateDir.isDirectory()) {
+            return true;
+        }
+        try {
+            FilePath reportRoot = new FilePath(aggregateDir);
+            List<FilePath> reportFiles = dropDuplicates(reportRoot, reportRoot.list("**/*"));
+            listener.getLogger().println("Uploading the " + reportFiles.size()
+                    + " report file(s) of the matrix configurations in one submission");
+
+            ItmsUploadAction action = ItmsUploadAction.create(build);
+            UploadSummary summary = new ReportUploader(publisher, build, reportRoot, listener)
+                    .combineReports()
+                    .recordInto(action)
+                    .upload(reportFiles.toArray(new FilePath[0]));
+            action.finish(summary);
+            action.printSummary(listener.getLogger());
+        } finally {
+            Util.deleteRecursive(aggregateDir);
+        }
+        return true;
+    }
+
+    private List<FilePath> dropDuplicates(FilePath reportRoot, FilePath[] reportFiles)
+            throws IOException, InterruptedException {
+        // Sorted so that the first configuration in name order keeps its copy.
+        Arrays.sort(reportFiles, Comparator.comparing(FilePath::getRemote));
+        List<String> reportPaths = new ArrayList<>();
+        int rootLength = reportRoot.getRemote().length() + 1;
+        for (FilePath filePath : reportFiles) {
+            reportPaths.add(filePath.getRemote().substring(rootLength));
+        }
+        Map<String, String> fingerprints = reportRoot.act(new ReportFingerprintCallable(reportPaths));
+
+        Set<String> seen = new HashSet<>();
+        List<FilePath> unique = new ArrayList<>();
+        for (int i = 0; i < reportFiles.length; i++) {
+            if (seen.add(fingerprints.get(reportPaths.get(i)))) {
+                unique.add(reportFiles[i]);
+            }
+        }
+        if (unique.size() < reportFiles.length) {
+            listener.getLogger().println("Skipped " + (reportFiles.length - unique.size())
+                    + " report file(s) identical to the report of another configuration");
+        }
+        return unique;
+    }
+}
@@ -0,0 +1,265 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.Functions;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import org.jenkins_cli.plugins.ifdtms.model.ReportResult;
+import org.jenkins_cli.plugins.ifdtms.model.UploadRecord;
+import org.jenkins_cli.plugins.ifdtms.model.UploadSummary;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Outcome of the iTMS upload of a build, kept with the build record. The result of each
+ * report is kept in a file of its own next to it, read only when the upload page is shown.
+ */
+public class ItmsUploadAction implements RunAction2 {
+
+    public enum Status { QUEUED, UPLOADING, FINISHED }
+
+    private static final Logger LOGGER = Logger.getLogger(ItmsUploadAction.class.getName());
+
+    private static final String URL_NAME = "itms-upload";
+    // Failed reports listed at the end of the build log, the others are on the upload page.
+    private static final int MAX_LOGGED_FAILURES = 20;
+
+    private Status status;
+    private UploadSummary summary;
+    private String spoolName;
+    private String urlName;
+    private long discoveryMillis;
+    private long preprocessMillis;
+    private long uploadMillis;
+    private int requests;
+    private long totalBytes;
+
+    private transient Run<?, ?> run;
+    private transient SoftReference<List<ReportResult>> results;
+
+    public ItmsUploadAction(Status status, String spoolName) {
+        this.status = status;
+        this.spoolName = spoolName;
+    }
+
+    static synchronized ItmsUploadAction forSpool(Run<?, ?> run, String spoolName) {
+        for (ItmsUploadAction action : run.getActions(ItmsUploadAction.class)) {
+            if (spoolName.equals(action.spoolName)) {
+                return action;
+            }
+        }
+        return add(run, new ItmsUploadAction(Status.QUEUED, spoolName));
+    }
+
+    static synchronized ItmsUploadAction create(Run<?, ?> run) {
+        return add(run, new ItmsUploadAction(Status.UPLOADING, null));
+    }
+
+    private static ItmsUploadAction add(Run<?, ?> run, ItmsUploadAction action) {
+        // A Pipeline may publish several times, each upload gets its own page.
+        int uploads = run.getActions(ItmsUploadAction.class).size();
+        action.urlName = uploads == 0 ? URL_NAME : URL_NAME + "-" + (uploads + 1);
+        run.addAction(action);
+        return action;
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public synchronized UploadSummary getSummary() {
+        return summary;
+    }
+
+    public synchronized void finish(UploadSummary summary) {
+        this.summary = summary;
+        this.status = Status.FINISHED;
+    }
+
+    /**
+     * Queues the upload again after an attempt that left reports to send.
+     *
+     * @param summary the reports the attempts so far got through, failures not counted.
+     */
+    public synchronized void requeue(UploadSummary summary) {
+        this.summary = summary;
+        this.status = Status.QUEUED;
+    }
+
+    public synchronized long getDiscoveryMillis() {
+        return discoveryMillis;
+    }
+
+    public synchronized void setDiscoveryMillis(long discoveryMillis) {
+        this.discoveryMillis = discoveryMillis;
+    }
+
+    public synchronized long getPreprocessMillis() {
+        return preprocessMillis;
+    }
+
+    public synchronized void setPreprocessMillis(long preprocessMillis) {
+        this.preprocessMillis = preprocessMillis;
+    }
+
+    public synchronized long getUploadMillis() {
+        return uploadMillis;
+    }
+
+    public synchronized void setUploadMillis(long uploadMillis) {
+        this.uploadMillis = uploadMillis;
+    }
+
+    public synchronized void addRecord(UploadRecord record) {
+        requests++;
+        totalBytes += record.getTimings().getBodyBytes();
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Appends results to the results file of the upload.
+     */
+    public synchronized void addResults(List<ReportResult> newResults) throws IOException {
+        File file = getResultsFile();
+        if (newResults.isEmpty() || file == null) {
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (ReportResult result : newResults) {
+                writer.write(result.toLine());
+                writer.write('\n');
+            }
+        }
+        results = null;
+    }
+
+    /**
+     * @return the result of each report, read from the results file on first use.
+     */
+    public synchronized List<ReportResult> getResults() {
+        List<ReportResult> loaded = results != null ? results.get() : null;
+        if (loaded == null) {
+            loaded = loadResults();
+            results = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+    private List<ReportResult> loadResults() {
+        File file = getResultsFile();
+        if (file == null || !file.isFile()) {
+            return Collections.emptyList();
+        }
+        List<ReportResult> loaded = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ReportResult result = ReportResult.fromLine(line);
+                if (result != null) {
+                    loaded.add(result);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+        }
+        return Collections.unmodifiableList(loaded);
+    }
+
+    private File getResultsFile() {
+        return run != null && urlName != null ? new File(run.getRootDir(), urlName + "-results.tsv") : null;
+    }
+
+    /**
+     * Prints the summary table of the upload, followed by the first failed reports.
+     */
+    public synchronized void printSummary(PrintStream logger) {
+        UploadSummary summary = this.summary != null ? this.summary : new UploadSummary();
+        logger.println(PLUGIN_NAME + " upload summary");
+        logger.println(String.format("  %-20s %,10d", "Uploaded", summary.getSucceeded()));
+        logger.println(String.format("  %-20s %,10d", "Failed", summary.getFailed()));
+        logger.println(String.format("  %-20s %,10d", "Skipped", summary.getSkipped()));
+        logger.println(String.format("  %-20s %,10d", "Requests", requests));
+        logger.println(String.format("  %-20s %10s", "Sent", Functions.humanReadableByteSize(totalBytes)));
+        logger.println(String.format("  %-20s %,7d ms", "Report discovery", discoveryMillis));
+        logger.println(String.format("  %-20s %,7d ms", "Pre-processing", preprocessMillis));
+        logger.println(String.format("  %-20s %,7d ms (%s)", "Upload", uploadMillis, getThroughput()));
+
+        if (summary.getFailed() > 0) {
+            int logged = 0;
+            for (ReportResult result : getResults()) {
+                if (result.getOutcome() == ReportResult.Outcome.FAILED && logged++ < MAX_LOGGED_FAILURES) {
+                    logger.println("  " + result.toStatusLine());
+                }
+            }
+            if (logged > MAX_LOGGED_FAILURES) {
+                logger.println("  ... " + (logged - MAX_LOGGED_FAILURES) + " more failed report(s), see the "
+                        + PLUGIN_NAME + " upload page of the build");
+            }
+        }
+    }
+
+    /**
+     * @return the upload rate over the whole upload phase, for display.
+     */
+    public synchronized String getThroughput() {
+        if (uploadMillis <= 0) {
+            return "-";
+        }
+        return Functions.humanReadableByteSize(totalBytes * 1000 / uploadMillis) + "/s";
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return urlName != null ? "graph.png" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return PLUGIN_NAME;
+    }
+
+    @Override
+    public String getUrlName() {
+        return urlName;
+    }
+}
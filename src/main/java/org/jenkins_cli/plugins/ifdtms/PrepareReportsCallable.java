@@ -0,0 +1,185 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.Util;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.jenkins_cli.plugins.ifdtms.model.ReportProcessingOptions;
+import org.jenkins_cli.plugins.ifdtms.util.CucumberReportFilter;
+import org.jenkins_cli.plugins.ifdtms.util.JUnitReportFilter;
+import org.jenkins_cli.plugins.ifdtms.util.ReportSplitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites and splits reports on the node that holds them, into a temporary folder that
+ * mirrors the report folder. Only the location of that folder comes back. A report the
+ * filters cannot process is sent as it is.
+ */
+class PrepareReportsCallable extends MasterToSlaveFileCallable<PrepareReportsCallable.PreparedReports> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Folder of the prepared folder that receives externalized Cucumber embeddings.
+     */
+    static final String EMBEDDINGS_FOLDER = ".embeddings";
+
+    private final ReportProcessingOptions options;
+    private final ArrayList<String> reportPaths;
+    private final boolean isJsonReport;
+    private final TaskListener listener;
+
+    PrepareReportsCallable(ReportProcessingOptions options, List<String> reportPaths, boolean isJsonReport,
+                           TaskListener listener) {
+        this.options = options;
+        this.reportPaths = new ArrayList<>(reportPaths);
+        this.isJsonReport = isJsonReport;
+        this.listener = listener;
+    }
+
+    @Override
+    public PreparedReports invoke(File reportFolder, VirtualChannel channel) throws IOException {
+        File preparedFolder = Files.createTempDirectory("itms-reports").toFile();
+        PreparedReports prepared = new PreparedReports(preparedFolder.getAbsolutePath());
+        try {
+            JUnitReportFilter junitFilter = new JUnitReportFilter(options.getJunitOutputMode(),
+                    options.getJunitOutputMaxChars(), options.isJunitFailuresOnly());
+            CucumberReportFilter cucumberFilter = new CucumberReportFilter(options.getEmbeddingsMode(),
+                    options.getEmbeddingMaxKilobytes() * 1024L);
+            long maxPartBytes = options.getSplitKilobytes() * 1024L;
+            ReportSplitter splitter = maxPartBytes > 0 ? new ReportSplitter(maxPartBytes) : null;
+            for (String reportPath : reportPaths) {
+                File report = new File(reportFolder, reportPath);
+                File preparedReport = new File(preparedFolder, reportPath);
+                Files.createDirectories(preparedReport.getParentFile().toPath());
+                File source = report;
+                if (options.isFilterEnabled(isJsonReport)) {
+                    // Embeddings of each report get their own folder, next to (not inside) the prepared reports.
+                    File embeddingsFolder = new File(new File(preparedFolder, EMBEDDINGS_FOLDER), reportPath);
+                    try {
+                        try (InputStream in = Files.newInputStream(report.toPath());
+                             OutputStream out = Files.newOutputStream(preparedReport.toPath())) {
+                            if (isJsonReport) {
+                                prepared.embeddings += cucumberFilter.filter(in, out, embeddingsFolder,
+                                        options.getEmbeddingsUrl() + encodePath(reportPath) + "/");
+                            } else {
+                                junitFilter.filter(in, out);
+                            }
+                        }
+                        source = preparedReport;
+                    } catch (IOException | RuntimeException e) {
+                        // iTMS may still make sense of it, the other reports are filtered as usual.
+                        Files.deleteIfExists(preparedReport.toPath());
+                        Util.deleteRecursive(embeddingsFolder);
+                        listener.getLogger().println("Sending " + reportPath + " unfiltered, it could not be processed: "
+                                + e.getMessage());
+                    }
+                }
+
+                List<File> parts = splitter != null && source.length() > maxPartBytes
+                        ? splitter.split(source, preparedReport, isJsonReport) : Collections.emptyList();
+                if (parts.isEmpty()) {
+                    if (source == report) {
+                        linkOrCopy(report, preparedReport);
+                    }
+                    prepared.add(reportPath, reportPath, preparedReport.length());
+                } else {
+                    Files.deleteIfExists(preparedReport.toPath());
+                    prepared.splitReports++;
+                    for (File part : parts) {
+                        prepared.add(preparedFolder.toPath().relativize(part.toPath()).toString(), reportPath,
+                                part.length());
+                    }
+                }
+                prepared.originalBytes += report.length();
+            }
+        } catch (IOException | RuntimeException e) {
+            Util.deleteRecursive(preparedFolder);
+            throw e;
+        }
+        return prepared;
+    }
+
+    private static void linkOrCopy(File report, File preparedReport) throws IOException {
+        try {
+            Files.createLink(preparedReport.toPath(), report.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            // Another file system, or one without hard links.
+            Files.copy(report.toPath(), preparedReport.toPath());
+        }
+    }
+
+    private static String encodePath(String path) {
+        StringBuilder encoded = new StringBuilder();
+        for (String segment : path.replace('\\', '/').split("/")) {
+            if (encoded.length() > 0) {
+                encoded.append('/');
+            }
+            encoded.append(Util.rawEncode(segment));
+        }
+        return encoded.toString();
+    }
+
+    static class PreparedReports implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String folder;
+        private final LinkedHashMap<String, String> originalPaths = new LinkedHashMap<>();
+        private long originalBytes;
+        private long preparedBytes;
+        private int embeddings;
+        private int splitReports;
+
+        PreparedReports(String folder) {
+            this.folder = folder;
+        }
+
+        void add(String preparedPath, String originalPath, long preparedLength) {
+            originalPaths.put(preparedPath, originalPath);
+            preparedBytes += preparedLength;
+        }
+
+        String getFolder() {
+            return folder;
+        }
+
+        /**
+         * @return relative path of each prepared file -> relative path of the report it was made from,
+         * parts of a split report follow each other in order.
+         */
+        Map<String, String> getOriginalPaths() {
+            return originalPaths;
+        }
+
+        long getOriginalBytes() {
+            return originalBytes;
+        }
+
+        long getPreparedBytes() {
+            return preparedBytes;
+        }
+
+        /**
+         * @return the number of embeddings written below {@link #EMBEDDINGS_FOLDER}, to be archived.
+         */
+        int getEmbeddings() {
+            return embeddings;
+        }
+
+        int getSplitReports() {
+            return splitReports;
+        }
+    }
+}
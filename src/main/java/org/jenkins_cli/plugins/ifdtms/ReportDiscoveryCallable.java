@@ -0,0 +1,56 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.remoting.VirtualChannel;
+import hudson.util.FileVisitor;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks the report folder on the node that holds it, only the selected relative paths come back.
+ */
+class ReportDiscoveryCallable extends MasterToSlaveFileCallable<ReportDiscoveryCallable.DiscoveredReports> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ReportScanner scanner;
+
+    ReportDiscoveryCallable(ReportScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    @Override
+    public DiscoveredReports invoke(File reportFolder, VirtualChannel channel) throws IOException {
+        final DiscoveredReports discovered = new DiscoveredReports();
+        if (reportFolder.isDirectory()) {
+            scanner.scan(reportFolder, new FileVisitor() {
+                @Override
+                public void visit(File f, String relativePath) {
+                    discovered.reportPaths.add(relativePath);
+                }
+            });
+            discovered.staleReports = scanner.getStaleReports();
+        }
+        return discovered;
+    }
+
+    static class DiscoveredReports implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> reportPaths = new ArrayList<>();
+        private int staleReports;
+
+        List<String> getReportPaths() {
+            return reportPaths;
+        }
+
+        int getStaleReports() {
+            return staleReports;
+        }
+    }
+}
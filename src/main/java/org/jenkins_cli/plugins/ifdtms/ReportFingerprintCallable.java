@@ -0,0 +1,55 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Computes the SHA-256 of each report on the node that holds the report folder,
+ * streaming the files so that only the digests are sent back.
+ */
+class ReportFingerprintCallable extends MasterToSlaveFileCallable<HashMap<String, String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<String> reportPaths;
+
+    ReportFingerprintCallable(List<String> reportPaths) {
+        this.reportPaths = new ArrayList<>(reportPaths);
+    }
+
+    @Override
+    public HashMap<String, String> invoke(File reportFolder, VirtualChannel channel) throws IOException {
+        HashMap<String, String> fingerprints = new HashMap<>();
+        byte[] buffer = new byte[64 * 1024];
+        for (String reportPath : reportPaths) {
+            MessageDigest digest = newDigest();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(new File(reportFolder, reportPath).toPath()), digest)) {
+                while (in.read(buffer) != -1) {
+                    // the digest is updated while reading
+                }
+            }
+            fingerprints.put(reportPath, Util.toHexString(digest.digest()));
+        }
+        return fingerprints;
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Selects the report files of a report folder on the node that holds it: Ant style
+ * include/exclude globs, excluded folders are not walked, and optionally only files
+ * modified since the build started. That time is carried as an age rather than a
+ * timestamp, so the clock of the node does not have to agree with the controller's.
+ */
+class ReportScanner extends DirScanner {
+
+    private static final long serialVersionUID = 1L;
+
+    // File systems keep modification times with a coarse granularity, do not miss a report written at build start.
+    private static final long MTIME_TOLERANCE_MILLIS = 2000;
+
+    private final String includes;
+    private final String excludes;
+    private final long maxAgeMillis;
+
+    private transient int staleReports;
+
+    /**
+     * @param maxAgeMillis how long ago the build started, or -1 to take reports of any age
+     */
+    ReportScanner(String includes, String excludes, long maxAgeMillis) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @Override
+    public void scan(File dir, final FileVisitor visitor) throws IOException {
+        final long modifiedSince = maxAgeMillis >= 0
+                ? System.currentTimeMillis() - maxAgeMillis - MTIME_TOLERANCE_MILLIS : Long.MIN_VALUE;
+        staleReports = 0;
+        new Glob(includes, excludes).scan(dir, new FileVisitor() {
+            @Override
+            public void visit(File f, String relativePath) throws IOException {
+                if (f.lastModified() >= modifiedSince) {
+                    visitor.visit(f, relativePath);
+                } else {
+                    staleReports++;
+                }
+            }
+
+            @Override
+            public boolean understandsSymlink() {
+                return visitor.understandsSymlink();
+            }
+
+            @Override
+            public void visitSymlink(File link, String target, String relativePath) throws IOException {
+                visitor.visitSymlink(link, target, relativePath);
+            }
+        });
+    }
+
+    /**
+     * @return the number of files matching the globs that were skipped by the last scan as older than the build.
+     */
+    int getStaleReports() {
+        return staleReports;
+    }
+}
@@ -0,0 +1,58 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.jenkins_cli.plugins.ifdtms.rest.MultipartReportBody;
+import org.jenkins_cli.plugins.ifdtms.rest.ReportContent;
+import org.jenkins_cli.plugins.ifdtms.rest.RequestApi;
+import org.jenkins_cli.plugins.ifdtms.rest.RetryPolicy;
+import org.jenkins_cli.plugins.ifdtms.rest.StandardResponse;
+import org.jenkins_cli.plugins.ifdtms.rest.TransportTimeouts;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends reports to iTMS from the node that holds the workspace, so that the
+ * report bytes never travel through the controller. Only the response comes back.
+ * The callable runs against the report folder, report paths are relative to it.
+ * It makes a single attempt, the controller retries under its request limits.
+ */
+class ReportUploadCallable extends MasterToSlaveFileCallable<StandardResponse> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String itmsAddress;
+    private final String token;
+    private final HashMap<String, String> postData;
+    private final ArrayList<String> reportPaths;
+    private final boolean isJsonReport;
+    private final String compression;
+    private final TransportTimeouts timeouts;
+
+    ReportUploadCallable(String itmsAddress, String token, Map<String, String> postData, List<String> reportPaths,
+                         boolean isJsonReport, String compression, TransportTimeouts timeouts) {
+        this.itmsAddress = itmsAddress;
+        this.token = token;
+        this.postData = new HashMap<>(postData);
+        this.reportPaths = new ArrayList<>(reportPaths);
+        this.isJsonReport = isJsonReport;
+        this.compression = compression;
+        this.timeouts = timeouts;
+    }
+
+    @Override
+    public StandardResponse invoke(File reportFolder, VirtualChannel channel) {
+        MultipartReportBody body = new MultipartReportBody(postData);
+        for (String reportPath : reportPaths) {
+            File report = new File(reportFolder, reportPath);
+            body.addReport(report.getName(), ReportContent.of(report), isJsonReport);
+        }
+
+        RequestApi requestApi = new RequestApi(RetryPolicy.NO_RETRY).withTimeouts(timeouts);
+        return requestApi.sendReportToITMS(itmsAddress, token, body, compression);
+    }
+}
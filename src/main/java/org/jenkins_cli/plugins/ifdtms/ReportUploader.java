@@ -0,0 +1,715 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hidden.jth.org.apache.http.HttpStatus;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.BuildListenerAdapter;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.jenkins_cli.plugins.ifdtms.model.AuthenticationInfo;
+import org.jenkins_cli.plugins.ifdtms.model.ReportProcessingOptions;
+import org.jenkins_cli.plugins.ifdtms.model.ReportResult;
+import org.jenkins_cli.plugins.ifdtms.model.UploadRecord;
+import org.jenkins_cli.plugins.ifdtms.model.UploadSummary;
+import org.jenkins_cli.plugins.ifdtms.rest.CircuitBreaker;
+import org.jenkins_cli.plugins.ifdtms.rest.ItmsEndpoints;
+import org.jenkins_cli.plugins.ifdtms.rest.MultipartReportBody;
+import org.jenkins_cli.plugins.ifdtms.rest.RequestApi;
+import org.jenkins_cli.plugins.ifdtms.rest.RequestLimiter;
+import org.jenkins_cli.plugins.ifdtms.rest.RetryPolicy;
+import org.jenkins_cli.plugins.ifdtms.rest.StandardResponse;
+import org.jenkins_cli.plugins.ifdtms.rest.TransportTimeouts;
+import org.jenkins_cli.plugins.ifdtms.util.ExpiringCache;
+import org.jenkins_cli.plugins.ifdtms.util.UploadDedupeCache;
+import org.jenkins_cli.plugins.ifdtms.util.UploadMetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Uploads the report files found by one run of {@link CucumberPostBuild}.
+ */
+class ReportUploader {
+
+    private static final String PREFIX = ReportUploader.class.getName();
+    // Servers that answered a batch with an error about the number of reports, sent one report per request for a while.
+    private static final ExpiringCache<Boolean> BATCH_REJECTING_SERVERS = new ExpiringCache<>(
+            Integer.getInteger(PREFIX + ".batchRejectionsSize", 1000),
+            Long.getLong(PREFIX + ".batchRejectionMillis", TimeUnit.HOURS.toMillis(1)));
+    // An error body matching this tells that the server takes a single report per request.
+    private static final Pattern BATCH_REJECTION = Pattern.compile(System.getProperty(PREFIX + ".batchRejectionPattern",
+            "(?i)\\b(multiple|several|more than one|only one|single|duplicate)\\W+(report|file)"));
+    // How long the interrupted upload threads get to record their reports once the upload timed out.
+    private static final long STOP_GRACE_SECONDS = 10;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final CucumberPostBuild publisher;
+    private final Run<?, ?> build;
+    private final FilePath reportRoot;
+    private final TaskListener listener;
+    private final UploadSummary summary = new UploadSummary();
+    private final AuthenticationInfo authenticationInfo;
+    private final boolean isJsonReport;
+    private final Map<String, String> postData;
+    private final TransportTimeouts timeouts;
+    // Relative path of a report -> its key in the dedupe cache.
+    private final Map<String, String> dedupeKeys = new HashMap<>();
+    // Folder the uploaded files are read from, a temporary folder once reports were pre-processed.
+    private FilePath uploadRoot;
+    // Relative path of a pre-processed file -> relative path of the report it was made from.
+    private Map<String, String> originalPaths = Collections.emptyMap();
+    // Relative path of a split report -> number of its parts not accepted by iTMS yet.
+    private final Map<String, Integer> remainingParts = new HashMap<>();
+    private final List<ReportResult> results = Collections.synchronizedList(new ArrayList<>());
+
+    private boolean deleteAcceptedReports;
+    private ItmsUploadAction action;
+    private int batchSize;
+    // When the requests still running are dropped, Long.MAX_VALUE for no limit.
+    private long deadline = Long.MAX_VALUE;
+
+    ReportUploader(CucumberPostBuild publisher, Run<?, ?> build, FilePath reportRoot, TaskListener listener) {
+        this.publisher = publisher;
+        this.build = build;
+        this.reportRoot = reportRoot;
+        this.uploadRoot = reportRoot;
+        this.listener = listener;
+        this.authenticationInfo = publisher.getDescriptor().getAuthenticationInfo();
+        this.isJsonReport = publisher.getReportFormat().equals(JSON_FORMAT);
+        this.postData = publisher.prepareRequestContent(build, authenticationInfo, isJsonReport);
+        this.timeouts = publisher.getDescriptor().getTransportTimeouts();
+        this.batchSize = publisher.getBatchSize();
+    }
+
+    /**
+     * Deletes each report once iTMS accepted it, so that an interrupted upload
+     * of a spooled copy can be resumed with only the remaining reports.
+     */
+    ReportUploader deleteAcceptedReports() {
+        this.deleteAcceptedReports = true;
+        return this;
+    }
+
+    /**
+     * Sends as many reports per request as the request size allows, whatever the batch size of the publisher.
+     */
+    ReportUploader combineReports() {
+        this.batchSize = MAX_BATCH_SIZE;
+        return this;
+    }
+
+    /**
+     * Keeps the phase timings and one record per request in the given build action.
+     */
+    ReportUploader recordInto(ItmsUploadAction action) {
+        this.action = action;
+        return this;
+    }
+
+    UploadSummary upload(FilePath[] reportFiles) throws IOException, InterruptedException {
+        if (publisher.getUploadTimeoutMinutes() > 0) {
+            deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(publisher.getUploadTimeoutMinutes());
+        }
+        if (reportFiles.length > 0) {
+            resolveCycle();
+        }
+        try {
+            return uploadReports(reportFiles);
+        } finally {
+            if (action != null) {
+                try {
+                    action.addResults(new ArrayList<>(results));
+                } catch (IOException e) {
+                    listener.getLogger().println("Failed to save the result of each report: " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Uploads to the cycle by id once iTMS resolved it, by name otherwise.
+     */
+    private void resolveCycle() throws InterruptedException {
+        String cycleId = CycleResolver.resolve(publisher, authenticationInfo, timeouts);
+        if (cycleId != null) {
+            postData.remove(CYCLE_NAME_PARAM);
+            postData.put(CYCLE_ID_PARAM, cycleId);
+            listener.getLogger().println("Uploading to iTMS cycle " + publisher.getItmsCycleName() + " (id " + cycleId + ")");
+        }
+    }
+
+    private UploadSummary uploadReports(FilePath[] reportFiles) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        List<FilePath> pendingFiles = publisher.isSkipUnchangedReports()
+                ? skipUnchangedReports(reportFiles) : Arrays.asList(reportFiles);
+
+        ReportProcessingOptions processingOptions = publisher.getProcessingOptions();
+        if (pendingFiles.isEmpty() || !processingOptions.isEnabled(isJsonReport)) {
+            return uploadPending(pendingFiles, start);
+        }
+
+        List<String> reportPaths = new ArrayList<>();
+        for (FilePath filePath : pendingFiles) {
+            reportPaths.add(relativePath(filePath));
+        }
+        // Reports are rewritten on the node that holds them, into a temporary folder mirroring the report folder.
+        if (isJsonReport) {
+            processingOptions.setEmbeddingsUrl(embeddingsUrl());
+        }
+        PrepareReportsCallable.PreparedReports prepared = reportRoot.act(
+                new PrepareReportsCallable(processingOptions, reportPaths, isJsonReport, listener));
+        long preprocessMillis = System.currentTimeMillis() - start;
+        if (action != null) {
+            action.setPreprocessMillis(preprocessMillis);
+        }
+        listener.getLogger().println(String.format("Pre-processed %d report file(s) in %d ms: %,d bytes -> %,d bytes",
+                reportPaths.size(), preprocessMillis, prepared.getOriginalBytes(), prepared.getPreparedBytes()));
+        if (prepared.getSplitReports() > 0) {
+            listener.getLogger().println("Split " + prepared.getSplitReports() + " report file(s) larger than "
+                    + processingOptions.getSplitKilobytes() + " KB into parts");
+        }
+
+        uploadRoot = new FilePath(reportRoot.getChannel(), prepared.getFolder());
+        originalPaths = prepared.getOriginalPaths();
+        for (String originalPath : originalPaths.values()) {
+            remainingParts.merge(originalPath, 1, Integer::sum);
+        }
+        remainingParts.values().removeIf(parts -> parts == 1);
+        try {
+            if (prepared.getEmbeddings() > 0) {
+                // Archived before the upload, so the links are valid as soon as iTMS has the reports.
+                archiveEmbeddings();
+                listener.getLogger().println("Archived " + prepared.getEmbeddings() + " embedding(s) in "
+                        + EMBEDDINGS_ARTIFACTS_FOLDER);
+            }
+            List<FilePath> preparedFiles = new ArrayList<>();
+            for (String preparedPath : originalPaths.keySet()) {
+                preparedFiles.add(uploadRoot.child(preparedPath));
+            }
+            return uploadPending(preparedFiles, System.currentTimeMillis());
+        } finally {
+            uploadRoot.deleteRecursive();
+        }
+    }
+
+    private UploadSummary uploadPending(List<FilePath> pendingFiles, long start)
+            throws IOException, InterruptedException {
+        // Parts of a split report are sent one after the other, in order, by a single task.
+        Map<String, List<FilePath>> splitReports = new LinkedHashMap<>();
+        List<FilePath> wholeReports = new ArrayList<>();
+        for (FilePath filePath : pendingFiles) {
+            String originalPath = originalPath(filePath);
+            if (remainingParts.containsKey(originalPath)) {
+                splitReports.computeIfAbsent(originalPath, path -> new ArrayList<>()).add(filePath);
+            } else {
+                wholeReports.add(filePath);
+            }
+        }
+        List<List<FilePath>> batches = groupReports(wholeReports);
+        if (batches.isEmpty() && splitReports.isEmpty()) {
+            return summary;
+        }
+
+        int requests = pendingFiles.size() - wholeReports.size() + batches.size();
+        int threads = Math.min(publisher.getUploadThreads(), batches.size() + splitReports.size());
+        listener.getLogger().println("Uploading " + pendingFiles.size() + " report file(s) in " + requests
+                + " request(s) using " + threads + " thread(s)");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new NamingThreadFactory(new DaemonThreadFactory(), "iTMS report upload " + build.getFullDisplayName()));
+        try {
+            List<Future<?>> uploads = new ArrayList<>();
+            for (final List<FilePath> parts : splitReports.values()) {
+                uploads.add(executor.submit(() -> {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    uploadParts(parts, new PrintStream(buffer, true));
+                    synchronized (listener) {
+                        listener.getLogger().print(buffer.toString());
+                    }
+                }));
+            }
+            for (final List<FilePath> batch : batches) {
+                uploads.add(executor.submit(() -> {
+                    // Each request logs into its own buffer so that its output stays grouped in the console.
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    PrintStream logger = new PrintStream(buffer, true);
+                    if (batch.size() == 1) {
+                        uploadReport(batch.get(0), logger);
+                    } else {
+                        uploadBatch(batch, logger);
+                    }
+                    synchronized (listener) {
+                        listener.getLogger().print(buffer.toString());
+                    }
+                }));
+            }
+            for (Future<?> upload : uploads) {
+                try {
+                    upload.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    listener.getLogger().printf("Error Occurred : %s%n", e.getCause());
+                } catch (TimeoutException e) {
+                    stopAtDeadline(executor, pendingFiles);
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            if (!dedupeKeys.isEmpty()) {
+                UploadDedupeCache.get().save();
+            }
+            if (action != null) {
+                action.setUploadMillis(System.currentTimeMillis() - start);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Drops the requests still running or queued, and reports the files they held as failed.
+     */
+    private void stopAtDeadline(ExecutorService executor, List<FilePath> pendingFiles) throws InterruptedException {
+        // Interrupted threads drop their request and record its reports themselves.
+        executor.shutdownNow();
+        executor.awaitTermination(STOP_GRACE_SECONDS, TimeUnit.SECONDS);
+
+        Set<String> reported = new HashSet<>();
+        synchronized (results) {
+            for (ReportResult result : results) {
+                reported.add(result.getPath());
+            }
+        }
+        int notSent = 0;
+        for (FilePath filePath : pendingFiles) {
+            if (!reported.contains(relativePath(filePath))) {
+                notSent++;
+                summary.recordFailure();
+                results.add(new ReportResult(relativePath(filePath), ReportResult.Outcome.FAILED, 0,
+                        "not sent within the upload timeout", null));
+            }
+        }
+        synchronized (listener) {
+            listener.getLogger().println(String.format("Upload timeout of %d minute(s) reached: %d of %d report "
+                            + "file(s) done, %d not sent", publisher.getUploadTimeoutMinutes(),
+                    pendingFiles.size() - notSent, pendingFiles.size(), notSent));
+        }
+    }
+
+    private List<FilePath> skipUnchangedReports(FilePath[] reportFiles) throws IOException, InterruptedException {
+        List<String> reportPaths = new ArrayList<>();
+        for (FilePath filePath : reportFiles) {
+            reportPaths.add(relativePath(filePath));
+        }
+        // All reports are hashed on the node that holds them, in a single round trip.
+        Map<String, String> fingerprints = reportRoot.act(new ReportFingerprintCallable(reportPaths));
+
+        UploadDedupeCache cache = UploadDedupeCache.get();
+        List<FilePath> pendingFiles = new ArrayList<>();
+        int unchanged = 0;
+        for (FilePath filePath : reportFiles) {
+            String dedupeKey = Util.getDigestOf(publisher.getItmsAddress() + '\n' + publisher.getJiraProjectKey()
+                    + '\n' + publisher.getJiraTicketKey() + '\n' + publisher.getItmsCycleName()
+                    + '\n' + fingerprints.get(relativePath(filePath)));
+            if (cache.contains(dedupeKey)) {
+                unchanged++;
+                summary.recordSkipped();
+                results.add(ReportResult.skipped(relativePath(filePath), "unchanged since it was last uploaded"));
+            } else {
+                dedupeKeys.put(relativePath(filePath), dedupeKey);
+                pendingFiles.add(filePath);
+            }
+        }
+        if (unchanged > 0) {
+            listener.getLogger().println(unchanged + " report file(s) unchanged since they were last uploaded, skipping them");
+        }
+        return pendingFiles;
+    }
+
+    private List<List<FilePath>> groupReports(List<FilePath> reportFiles) throws IOException, InterruptedException {
+        List<List<FilePath>> batches = new ArrayList<>();
+        if (batchSize == 1 || BATCH_REJECTING_SERVERS.getIfPresent(publisher.getItmsAddress()) != null) {
+            for (FilePath filePath : reportFiles) {
+                batches.add(Collections.singletonList(filePath));
+            }
+            return batches;
+        }
+
+        long maxBytes = publisher.getBatchMaxKilobytes() * 1024L;
+        List<FilePath> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (FilePath filePath : reportFiles) {
+            long length = filePath.length();
+            if (length == 0) {
+                summary.recordSkipped();
+                report(ReportResult.skipped(relativePath(filePath), "empty"), listener.getLogger());
+                continue;
+            }
+            if (!batch.isEmpty() && (batch.size() >= batchSize || batchBytes + length > maxBytes)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(filePath);
+            batchBytes += length;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private void uploadParts(List<FilePath> parts, PrintStream logger) {
+        for (int i = 0; i < parts.size(); i++) {
+            if (!uploadReport(parts.get(i), logger)) {
+                // The following parts would leave an incomplete report behind in the cycle.
+                for (int j = i + 1; j < parts.size(); j++) {
+                    summary.recordFailure();
+                    report(new ReportResult(relativePath(parts.get(j)), ReportResult.Outcome.FAILED, 0,
+                            "not sent, " + parts.get(i).getName() + " failed", null), logger);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return whether iTMS accepted the report.
+     */
+    private boolean uploadReport(FilePath filePath, PrintStream logger) {
+        try {
+            StandardResponse response = sendReportContent(filePath);
+            if (response == null) {
+                summary.recordSkipped();
+                report(ReportResult.skipped(relativePath(filePath), "empty"), logger);
+                return false;
+            }
+            record(Collections.singletonList(filePath), response);
+            recordResponse(Collections.singletonList(filePath), response, logger);
+            return response.isSuccessful();
+        } catch (IOException | InterruptedException e) {
+            summary.recordFailure();
+            report(new ReportResult(relativePath(filePath), ReportResult.Outcome.FAILED, 0, e.toString(), null),
+                    logger);
+            return false;
+        }
+    }
+
+    private void uploadBatch(List<FilePath> batch, PrintStream logger) {
+        boolean fallback = false;
+        try {
+            StandardResponse response = sendReports(batch);
+            record(batch, response);
+            boolean batchRejected = isBatchRejected(response);
+            if (batchRejected || response.getCode() == HttpStatus.SC_REQUEST_TOO_LONG) {
+                if (batchRejected) {
+                    // The server does not take several reports per request, remember that for a while.
+                    BATCH_REJECTING_SERVERS.put(publisher.getItmsAddress(), Boolean.TRUE);
+                }
+                // A batch that is only too large goes one by one as well, the next ones may still be sent together.
+                fallback = true;
+                logger.println("Batch of " + batch.size() + " report file(s) rejected by iTMS (" + response.getCode()
+                        + "), sending them one by one");
+            } else {
+                recordResponse(batch, response, logger);
+            }
+        } catch (IOException | InterruptedException e) {
+            for (FilePath filePath : batch) {
+                summary.recordFailure();
+                report(new ReportResult(relativePath(filePath), ReportResult.Outcome.FAILED, 0, e.toString(), null),
+                        logger);
+            }
+        }
+
+        if (fallback) {
+            for (FilePath filePath : batch) {
+                uploadReport(filePath, logger);
+            }
+        }
+    }
+
+    private void recordResponse(List<FilePath> reportFiles, StandardResponse response, PrintStream logger)
+            throws IOException, InterruptedException {
+        for (FilePath filePath : reportFiles) {
+            report(new ReportResult(relativePath(filePath), response.isSuccessful()
+                    ? ReportResult.Outcome.UPLOADED : ReportResult.Outcome.FAILED,
+                    response.getCode(), response.getMessage(), response.getTimings()), logger);
+            if (response.isSuccessful()) {
+                summary.recordSuccess();
+                String originalPath = originalPath(filePath);
+                if (!isLastPart(originalPath)) {
+                    continue;
+                }
+                String dedupeKey = dedupeKeys.get(originalPath);
+                if (dedupeKey != null) {
+                    UploadDedupeCache.get().put(dedupeKey);
+                }
+                if (deleteAcceptedReports) {
+                    reportRoot.child(originalPath).delete();
+                }
+            } else {
+                summary.recordFailure();
+            }
+        }
+    }
+
+    /**
+     * Keeps the result for the upload page and prints its one line status.
+     */
+    private void report(ReportResult result, PrintStream logger) {
+        results.add(result);
+        logger.println(result.toStatusLine());
+    }
+
+    private void record(List<FilePath> reportFiles, StandardResponse response) {
+        StringBuilder reports = new StringBuilder();
+        for (FilePath filePath : reportFiles) {
+            if (reports.length() > 0) {
+                reports.append(", ");
+            }
+            reports.append(relativePath(filePath));
+        }
+        UploadRecord record = new UploadRecord(reports.toString(), reportFiles.size(), response.getCode(),
+                response.isSuccessful(), response.getTimings());
+        UploadMetrics.recordRequest(record);
+        if (action != null) {
+            action.addRecord(record);
+        }
+    }
+
+    /**
+     * @return whether all the parts of the report were accepted, always true for a report that was not split.
+     */
+    private boolean isLastPart(String originalPath) {
+        synchronized (remainingParts) {
+            Integer remaining = remainingParts.get(originalPath);
+            if (remaining == null) {
+                return true;
+            }
+            remainingParts.put(originalPath, remaining - 1);
+            return remaining == 1;
+        }
+    }
+
+    /**
+     * @return whether the server refused the request because it carried several reports, as opposed to
+     * refusing one of the reports.
+     */
+    static boolean isBatchRejected(StandardResponse response) {
+        int responseCode = response.getCode();
+        return (responseCode == HttpStatus.SC_BAD_REQUEST
+                || responseCode == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE
+                || responseCode == HttpStatus.SC_UNPROCESSABLE_ENTITY)
+                && response.getMessage() != null && BATCH_REJECTION.matcher(response.getMessage()).find();
+    }
+
+    /**
+     * @return whether a report failed in a way that may go away, iTMS being unreachable, overloaded or
+     * down. The other failures are answers about the reports themselves, sending them again changes nothing.
+     */
+    boolean hasTransientFailures() {
+        synchronized (results) {
+            for (ReportResult result : results) {
+                if (result.getOutcome() == ReportResult.Outcome.FAILED && isTransient(result.getResponseCode())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean isTransient(int responseCode) {
+        return responseCode == CircuitBreaker.REJECTED || responseCode == HttpStatus.SC_REQUEST_TIMEOUT
+                || RetryPolicy.DEFAULT.isRetryable(responseCode);
+    }
+
+    /**
+     * Forgets which servers rejected batches, once the global configuration changed.
+     */
+    static void invalidateBatchRejections() {
+        BATCH_REJECTING_SERVERS.invalidateAll();
+    }
+
+    private StandardResponse sendReports(List<FilePath> reportFiles) throws IOException, InterruptedException {
+        // A failing iTMS node hands the request over to the next one, when the address is on a node of a cluster.
+        Set<String> tried = new HashSet<>();
+        List<String> failedNodes = new ArrayList<>();
+        StandardResponse response = null;
+        ItmsEndpoints.Endpoint endpoint;
+        while ((endpoint = ItmsEndpoints.select(publisher.getItmsAddress(), tried)) != null) {
+            tried.add(endpoint.getServer());
+            String itmsAddress = endpoint.rewrite(publisher.getItmsAddress());
+            boolean canFailOver = ItmsEndpoints.hasUntried(publisher.getItmsAddress(), tried);
+            endpoint.requestStarted();
+            try {
+                response = sendWithRetries(itmsAddress, reportFiles, canFailOver);
+            } finally {
+                endpoint.requestFinished();
+            }
+            if (response.getCode() != CircuitBreaker.REJECTED && !RetryPolicy.DEFAULT.isRetryable(response.getCode())) {
+                break;
+            }
+            failedNodes.add(endpoint.getServer());
+        }
+        if (response != null && failedNodes.size() > (response.isSuccessful() ? 0 : 1)) {
+            response.setMessage((response.isSuccessful() ? "[failed over from " : "[failed on ")
+                    + String.join(", ", failedNodes) + "] " + response.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Sends the reports to one node, retrying as {@link RetryPolicy#DEFAULT} allows within one total
+     * budget. Each attempt takes a permit of the limiter of the node, and gives it back before the
+     * delay that precedes the next one.
+     *
+     * @param canFailOver whether another node is left to try. The node is then only retried when it
+     *                    asked for it through Retry-After, any other failure moves on to the next node.
+     */
+    private StandardResponse sendWithRetries(String itmsAddress, List<FilePath> reportFiles, boolean canFailOver)
+            throws IOException, InterruptedException {
+        RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+        RequestLimiter limiter = RequestLimiter.forServer(itmsAddress);
+        long deadline = timeouts.getTotalMillis() > 0
+                ? System.currentTimeMillis() + timeouts.getTotalMillis() : Long.MAX_VALUE;
+        StandardResponse response = null;
+        for (int retry = 0; ; retry++) {
+            // Taken on the controller, so that the limit also holds for the requests sent from agents.
+            try (RequestLimiter.Permit permit = limiter.acquire()) {
+                long remainingMillis = deadline - System.currentTimeMillis();
+                if (remainingMillis <= 0) {
+                    return response != null ? response : new StandardResponse(0, null, String.format(
+                            "%d: %s: no request slot for %s within %d ms", 0, null, itmsAddress,
+                            timeouts.getTotalMillis()));
+                }
+                response = sendRequest(itmsAddress, reportFiles,
+                        deadline == Long.MAX_VALUE ? timeouts : timeouts.withTotalMillis(remainingMillis));
+                if (response.getTimings() != null) {
+                    response.getTimings().setQueueMillis(permit.getWaitMillis());
+                }
+            }
+            if (retry > 0) {
+                response.setMessage("[retried " + retry + " time(s)] " + response.getMessage());
+            }
+            boolean retryable = canFailOver ? isAskedToWait(response) : retryPolicy.isRetryable(response.getCode());
+            if (!retryable || retry >= retryPolicy.getMaxRetries()) {
+                return response;
+            }
+            long delayMillis = retryPolicy.getDelayMillis(retry, response.getRetryAfterMillis());
+            if (delayMillis >= deadline - System.currentTimeMillis()) {
+                return response;
+            }
+            TimeUnit.MILLISECONDS.sleep(delayMillis);
+        }
+    }
+
+    /**
+     * @return whether the node is only busy and said when to come back, a 429 or 503 with Retry-After.
+     */
+    static boolean isAskedToWait(StandardResponse response) {
+        return (response.getCode() == HTTP_TOO_MANY_REQUESTS || response.getCode() == HttpStatus.SC_SERVICE_UNAVAILABLE)
+                && response.getRetryAfterMillis() >= 0;
+    }
+
+    /**
+     * Makes a single attempt, the retries are up to the caller.
+     */
+    private StandardResponse sendRequest(String itmsAddress, List<FilePath> reportFiles, TransportTimeouts timeouts)
+            throws IOException, InterruptedException {
+        String compression = publisher.getDescriptor().getUploadCompression();
+
+        if (publisher.isUploadFromAgent() && uploadRoot.isRemote()) {
+            List<String> reportPaths = new ArrayList<>();
+            for (FilePath filePath : reportFiles) {
+                reportPaths.add(relativePath(filePath));
+            }
+            // The agent has its own breaker, this one keeps the controller-wide view of the server.
+            CircuitBreaker circuitBreaker = CircuitBreaker.forServer(itmsAddress);
+            if (!circuitBreaker.allowRequest()) {
+                return circuitBreaker.rejection();
+            }
+            StandardResponse response;
+            try {
+                response = uploadRoot.act(new ReportUploadCallable(itmsAddress, authenticationInfo.getToken(),
+                        postData, reportPaths, isJsonReport, compression, timeouts));
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                circuitBreaker.recordFailure();
+                throw e;
+            }
+            if (response.getCode() == CircuitBreaker.REJECTED) {
+                // Kept back by the breaker of the agent, nothing reached the server.
+                circuitBreaker.cancelRequest();
+            } else if (RetryPolicy.DEFAULT.isRetryable(response.getCode())) {
+                circuitBreaker.recordFailure();
+            } else {
+                circuitBreaker.recordSuccess();
+            }
+            return response;
+        }
+
+        MultipartReportBody body = new MultipartReportBody(postData);
+        for (FilePath filePath : reportFiles) {
+            body.addReport(filePath.getName(), new FilePathReportContent(filePath), isJsonReport);
+        }
+
+        RequestApi requestApi = new RequestApi(RetryPolicy.NO_RETRY).withTimeouts(timeouts);
+        return requestApi.sendReportToITMS(itmsAddress, authenticationInfo.getToken(), body, compression);
+    }
+
+    private StandardResponse sendReportContent(FilePath filePath) throws IOException, InterruptedException {
+        if (filePath.length() > 0) {
+            return sendReports(Collections.singletonList(filePath));
+        }
+        return null;
+    }
+
+    /**
+     * Hands the embeddings to the artifact manager of the build, which may keep them outside of the controller.
+     */
+    private void archiveEmbeddings() throws IOException, InterruptedException {
+        Map<String, String> artifacts = new LinkedHashMap<>();
+        for (FilePath embedding : uploadRoot.child(PrepareReportsCallable.EMBEDDINGS_FOLDER).list("**/*")) {
+            String path = relativePath(embedding).replace('\\', '/');
+            artifacts.put(EMBEDDINGS_ARTIFACTS_FOLDER + path.substring(PrepareReportsCallable.EMBEDDINGS_FOLDER.length()),
+                    path);
+        }
+        build.pickArtifactManager().archive(uploadRoot, uploadRoot.createLauncher(listener),
+                BuildListenerAdapter.wrap(listener), artifacts);
+    }
+
+    private String embeddingsUrl() {
+        String rootUrl = Jenkins.get().getRootUrl();
+        return (rootUrl != null ? rootUrl : "/") + build.getUrl() + "artifact/" + EMBEDDINGS_ARTIFACTS_FOLDER + "/";
+    }
+
+    private String relativePath(FilePath filePath) {
+        String path = filePath.getRemote().substring(uploadRoot.getRemote().length());
+        return path.replaceFirst("^[/\\\\]+", "");
+    }
+
+    private String originalPath(FilePath filePath) {
+        String path = relativePath(filePath);
+        return originalPaths.getOrDefault(path, path);
+    }
+}
@@ -0,0 +1,155 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Run;
+import hudson.util.DirScanner;
+import hudson.util.StreamTaskListener;
+import org.jenkins_cli.plugins.ifdtms.model.UploadSummary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Copy of the reports of a build kept under the build directory until the
+ * {@link UploadSpoolDispatcher} sent them to iTMS. The job configuration is
+ * snapshotted with it so that a spool can be drained after a restart. Reports iTMS
+ * did not take while it was unreachable or failing stay in the spool for the next attempt.
+ */
+class UploadSpool {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadSpool.class.getName());
+
+    private static final String SPOOLS_DIR = "itms-spool";
+    private static final String REPORTS_DIR = "reports";
+    private static final String UPLOAD_LOG = "itms-upload.log";
+
+    private final CucumberPostBuild publisher;
+
+    private UploadSpool(CucumberPostBuild publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Copies the reports into a new spool of the run, a Pipeline may publish several times per run.
+     *
+     * @return the name of the spool.
+     */
+    static String create(Run<?, ?> run, CucumberPostBuild publisher, FilePath reportRoot, DirScanner reports)
+            throws IOException, InterruptedException {
+        File spoolsDir = new File(run.getRootDir(), SPOOLS_DIR);
+        Files.createDirectories(spoolsDir.toPath());
+        File spoolDir = Files.createTempDirectory(spoolsDir.toPath(), "spool").toFile();
+        reportRoot.copyRecursiveTo(reports, new FilePath(new File(spoolDir, REPORTS_DIR)), "iTMS reports");
+        getSpoolFile(spoolDir).write(new UploadSpool(publisher));
+        return spoolDir.getName();
+    }
+
+    static UploadSpool load(Run<?, ?> run, String spoolName) throws IOException {
+        XmlFile spoolFile = getSpoolFile(getSpoolDir(run, spoolName));
+        return spoolFile.exists() ? (UploadSpool) spoolFile.read() : null;
+    }
+
+    private static File getSpoolDir(Run<?, ?> run, String spoolName) {
+        return new File(new File(run.getRootDir(), SPOOLS_DIR), spoolName);
+    }
+
+    private static XmlFile getSpoolFile(File spoolDir) {
+        return new XmlFile(new File(spoolDir, "spool.xml"));
+    }
+
+    static File getUploadLog(Run<?, ?> run) {
+        return new File(run.getRootDir(), UPLOAD_LOG);
+    }
+
+    void upload(Run<?, ?> run, String spoolName) throws IOException, InterruptedException {
+        ItmsUploadAction action = ItmsUploadAction.forSpool(run, spoolName);
+        File spoolDir = getSpoolDir(run, spoolName);
+        // A retry after the upload finished only has the spool left to delete.
+        if (action.getStatus() != ItmsUploadAction.Status.FINISHED) {
+            action.setStatus(ItmsUploadAction.Status.UPLOADING);
+            run.save();
+
+            FilePath reportRoot = new FilePath(new File(spoolDir, REPORTS_DIR));
+            UploadSummary summary = new UploadSummary();
+            try (StreamTaskListener listener = new StreamTaskListener(
+                    new FileOutputStream(getUploadLog(run), true), StandardCharsets.UTF_8)) {
+                listener.getLogger().println("Starting " + PLUGIN_NAME + " background upload..");
+                FilePath[] reportFiles = reportRoot.exists() ? reportRoot.list("**/*") : new FilePath[0];
+                if (reportFiles.length > 0) {
+                    // Accepted reports are removed from the spool, a restart or a retry resumes with the rest.
+                    ReportUploader uploader = new ReportUploader(publisher, run, reportRoot, listener)
+                            .deleteAcceptedReports()
+                            .recordInto(action);
+                    summary = uploader.upload(reportFiles);
+                    if (uploader.hasTransientFailures()) {
+                        UploadSummary accepted = earlierAttempts(action);
+                        accepted.addEarlierAttempt(summary);
+                        action.requeue(accepted);
+                        run.save();
+                        listener.getLogger().println(summary.getFailed()
+                                + " report(s) not accepted by iTMS yet, they stay spooled for another attempt");
+                        throw new IOException("iTMS did not accept " + summary.getFailed() + " report(s) of "
+                                + spoolName + " yet");
+                    }
+                }
+                summary.addEarlierAttempt(earlierAttempts(action));
+                action.finish(summary);
+                action.printSummary(listener.getLogger());
+            }
+        }
+
+        run.save();
+        Util.deleteRecursive(spoolDir);
+    }
+
+    /**
+     * @return a copy of what the earlier attempts of a requeued upload got through.
+     */
+    private static UploadSummary earlierAttempts(ItmsUploadAction action) {
+        UploadSummary earlier = new UploadSummary();
+        if (action.getSummary() != null) {
+            earlier.addEarlierAttempt(action.getSummary());
+        }
+        return earlier;
+    }
+
+    /**
+     * Gives up a spool that could not be uploaded: its remaining reports are counted as failed,
+     * the reason goes to the upload log and the spool is deleted.
+     */
+    static void discard(Run<?, ?> run, String spoolName, Exception cause) {
+        File spoolDir = getSpoolDir(run, spoolName);
+        try {
+            ItmsUploadAction action = ItmsUploadAction.forSpool(run, spoolName);
+            if (action.getStatus() != ItmsUploadAction.Status.FINISHED) {
+                UploadSummary summary = earlierAttempts(action);
+                Path reportRoot = new File(spoolDir, REPORTS_DIR).toPath();
+                if (Files.isDirectory(reportRoot)) {
+                    try (Stream<Path> reports = Files.walk(reportRoot)) {
+                        reports.filter(Files::isRegularFile).forEach(report -> summary.recordFailure());
+                    }
+                }
+                action.finish(summary);
+                run.save();
+            }
+            try (StreamTaskListener listener = new StreamTaskListener(
+                    new FileOutputStream(getUploadLog(run), true), StandardCharsets.UTF_8)) {
+                listener.getLogger().println("Gave up the " + PLUGIN_NAME + " background upload: " + cause);
+            }
+            Util.deleteRecursive(spoolDir);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to discard the iTMS upload spool " + spoolDir, e);
+        }
+    }
+}
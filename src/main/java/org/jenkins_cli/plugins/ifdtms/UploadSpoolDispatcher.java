@@ -0,0 +1,180 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller-side background worker that drains the {@link UploadSpool}s of
+ * builds using the asynchronous upload mode. The builds with a pending spool
+ * are persisted, so queued uploads are picked up again after a restart.
+ */
+@Extension
+public class UploadSpoolDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadSpoolDispatcher.class.getName());
+    private static final String PREFIX = UploadSpoolDispatcher.class.getName();
+    private static final int DISPATCH_THREADS = Integer.getInteger(PREFIX + ".threads", 2);
+    private static final long BUILDING_RECHECK_SECONDS = 10;
+    // A spool whose upload fails is tried again after a doubling delay, then given up.
+    private static final int MAX_ATTEMPTS = Integer.getInteger(PREFIX + ".maxAttempts", 5);
+    // Not final, so that it can be changed from the script console.
+    static long RETRY_DELAY_SECONDS = Long.getLong(PREFIX + ".retryDelaySeconds", 60);
+    private static final String SPOOL_SEPARATOR = "/";
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(DISPATCH_THREADS,
+            new NamingThreadFactory(new DaemonThreadFactory(), "iTMS upload spool"));
+    // Entries are <run externalizable id>/<spool name>.
+    private final Set<String> pending = new LinkedHashSet<>();
+    // Failed attempts of the pending spools since the start.
+    private final Map<String, Integer> failures = new HashMap<>();
+
+    public static UploadSpoolDispatcher get() {
+        return ExtensionList.lookupSingleton(UploadSpoolDispatcher.class);
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void resumePendingUploads() {
+        get().resume();
+    }
+
+    /**
+     * Interrupts the uploads in progress, their spools stay pending for the next start.
+     */
+    @Terminator
+    public static void stopUploads() {
+        get().executor.shutdownNow();
+    }
+
+    void submit(Run<?, ?> run, String spoolName) {
+        String spoolId = run.getExternalizableId() + SPOOL_SEPARATOR + spoolName;
+        synchronized (this) {
+            pending.add(spoolId);
+            save();
+        }
+        schedule(spoolId, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resume() {
+        XmlFile file = getConfigFile();
+        if (!file.exists()) {
+            return;
+        }
+        List<String> spoolIds;
+        try {
+            spoolIds = (List<String>) file.read();
+        } catch (IOException | ClassCastException e) {
+            LOGGER.log(Level.WARNING, "Failed to load the pending iTMS uploads", e);
+            return;
+        }
+        synchronized (this) {
+            pending.addAll(spoolIds);
+        }
+        for (String spoolId : spoolIds) {
+            LOGGER.log(Level.INFO, "Resuming iTMS upload of {0}", spoolId);
+            schedule(spoolId, 0);
+        }
+    }
+
+    private void schedule(String spoolId, long delaySeconds) {
+        try {
+            executor.schedule(() -> dispatch(spoolId), delaySeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the spool stays pending for the next start.
+            LOGGER.log(Level.FINE, "Not dispatching {0} while shutting down", spoolId);
+        }
+    }
+
+    private void dispatch(String spoolId) {
+        boolean done = true;
+        String runId = spoolId.substring(0, spoolId.lastIndexOf(SPOOL_SEPARATOR));
+        String spoolName = spoolId.substring(spoolId.lastIndexOf(SPOOL_SEPARATOR) + 1);
+        Run<?, ?> run = null;
+        try {
+            run = Run.fromExternalizableId(runId);
+            if (run == null) {
+                LOGGER.log(Level.WARNING, "Dropping the iTMS upload of {0}, the build no longer exists", runId);
+            } else if (run.isBuilding()) {
+                // Wait for the final result, it is part of what gets sent to iTMS.
+                done = false;
+                schedule(spoolId, BUILDING_RECHECK_SECONDS);
+            } else {
+                UploadSpool spool = UploadSpool.load(run, spoolName);
+                if (spool != null) {
+                    spool.upload(run, spoolName);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            done = !retry(spoolId, e);
+            if (done && run != null) {
+                UploadSpool.discard(run, spoolName, e);
+            }
+        } catch (InterruptedException e) {
+            // Shutting down, keep the spool for the next start.
+            done = false;
+            Thread.currentThread().interrupt();
+        } finally {
+            if (done) {
+                synchronized (this) {
+                    pending.remove(spoolId);
+                    failures.remove(spoolId);
+                    save();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether the spool is tried again, false once it failed too many times.
+     */
+    private boolean retry(String spoolId, Exception cause) {
+        int failed;
+        synchronized (this) {
+            failed = failures.merge(spoolId, 1, Integer::sum);
+        }
+        if (failed >= MAX_ATTEMPTS) {
+            LOGGER.log(Level.WARNING, "Giving up the iTMS upload of " + spoolId + " after " + failed + " attempts", cause);
+            return false;
+        }
+        long delaySeconds = RETRY_DELAY_SECONDS << Math.min(failed - 1, 10);
+        LOGGER.log(Level.WARNING, "Failed to upload the spooled reports of " + spoolId + " to iTMS, trying again in "
+                + delaySeconds + " s", cause);
+        schedule(spoolId, delaySeconds);
+        return true;
+    }
+
+    private synchronized void save() {
+        try {
+            getConfigFile().write(new ArrayList<>(pending));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the pending iTMS uploads", e);
+        }
+    }
+
+    private static XmlFile getConfigFile() {
+        return new XmlFile(new File(Jenkins.get().getRootDir(), UploadSpoolDispatcher.class.getName() + ".xml"));
+    }
+}
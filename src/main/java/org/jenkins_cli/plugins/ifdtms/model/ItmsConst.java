@@ -10,6 +10,41 @@ public class ItmsConst {
     public static final String JSON_FORMAT = "Cucumber Json";
     public static final String XML_FORMAT = "JUnit";
 
+    // Upload
+    public static final int DEFAULT_UPLOAD_THREADS = 4;
+    public static final int MAX_UPLOAD_THREADS = 32;
+    public static final int DEFAULT_BATCH_SIZE = 1;
+    public static final int MAX_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BATCH_MAX_KILOBYTES = 10 * 1024;
+
+    // JUnit system-out/system-err handling
+    public static final String OUTPUT_KEEP = "Keep";
+    public static final String OUTPUT_TRUNCATE = "Truncate";
+    public static final String OUTPUT_STRIP = "Strip";
+    public static final int DEFAULT_OUTPUT_MAX_CHARS = 4096;
+
+    // Cucumber embeddings handling
+    public static final String EMBEDDINGS_KEEP = "Keep";
+    public static final String EMBEDDINGS_DROP = "Drop";
+    public static final String EMBEDDINGS_CAP = "Cap";
+    public static final String EMBEDDINGS_LINK = "Link to artifacts";
+    public static final int DEFAULT_EMBEDDING_MAX_KILOBYTES = 256;
+    public static final String EMBEDDINGS_ARTIFACTS_FOLDER = "itms-embeddings";
+
+    // Upload compression
+    public static final String COMPRESSION_NONE = "None";
+    public static final String COMPRESSION_GZIP = "Gzip";
+    public static final String COMPRESSION_AUTO = "Auto";
+
+    // Requests to one iTMS server from all builds, 0 means no limit
+    public static final int DEFAULT_MAX_REQUESTS_PER_SECOND = 0;
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 0;
+
+    // Time budgets of one report request, 0 means no limit
+    public static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 30;
+    public static final int DEFAULT_READ_TIMEOUT_SECONDS = 300;
+    public static final int DEFAULT_REQUEST_TIMEOUT_SECONDS = 900;
+
     // Media Type
     public static final String APPLICATION_JSON_TYPE = "Content-Type: application/json; charset=";
     public static final String APPLICATION_XML_TYPE = "Content-Type: application/xml; charset=";
@@ -22,8 +57,16 @@ public class ItmsConst {
     public static final String PROJECT_NAME_PARAM = "project_key";
     public static final String TICKET_KEY_PARAM = "ticket_key";
     public static final String CYCLE_NAME_PARAM = "cycle_name";
+    public static final String CYCLE_ID_PARAM = "cycle_id";
     public static final String IS_JSON_PARAM = "is_json";
     public static final String TOKEN_PARAM = "token";
+    public static final String UPLOAD_COMPRESSION_PARAM = "uploadCompression";
+    public static final String MAX_REQUESTS_PER_SECOND_PARAM = "maxRequestsPerSecond";
+    public static final String MAX_IN_FLIGHT_REQUESTS_PARAM = "maxInFlightRequests";
+    public static final String ITMS_NODES_PARAM = "itmsNodes";
+    public static final String CONNECT_TIMEOUT_SECONDS_PARAM = "connectTimeoutSeconds";
+    public static final String READ_TIMEOUT_SECONDS_PARAM = "readTimeoutSeconds";
+    public static final String REQUEST_TIMEOUT_SECONDS_PARAM = "requestTimeoutSeconds";
     public static final String ATTRIBUTE_BUILD_NUM_PARAM = "jenkins_auto_executions_attributes[][build_number]";
     public static final String ATTRIBUTE_BUILD_STATUS_PARAM = "jenkins_auto_executions_attributes[][build_status]";
     public static final String ATTRIBUTE_USER_PARAM = "jenkins_auto_executions_attributes[][user]";
@@ -0,0 +1,80 @@
+package org.jenkins_cli.plugins.ifdtms.model;
+
+import java.io.Serializable;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * How reports are rewritten on the agent before they are uploaded.
+ */
+public class ReportProcessingOptions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String junitOutputMode;
+    private final int junitOutputMaxChars;
+    private final boolean junitFailuresOnly;
+    private final String embeddingsMode;
+    private final int embeddingMaxKilobytes;
+    private final int splitKilobytes;
+    private String embeddingsUrl;
+
+    public ReportProcessingOptions(String junitOutputMode, int junitOutputMaxChars, boolean junitFailuresOnly,
+                                   String embeddingsMode, int embeddingMaxKilobytes, int splitKilobytes) {
+        this.junitOutputMode = junitOutputMode;
+        this.junitOutputMaxChars = junitOutputMaxChars;
+        this.junitFailuresOnly = junitFailuresOnly;
+        this.embeddingsMode = embeddingsMode;
+        this.embeddingMaxKilobytes = embeddingMaxKilobytes;
+        this.splitKilobytes = splitKilobytes;
+    }
+
+    public String getJunitOutputMode() {
+        return junitOutputMode;
+    }
+
+    public int getJunitOutputMaxChars() {
+        return junitOutputMaxChars;
+    }
+
+    public boolean isJunitFailuresOnly() {
+        return junitFailuresOnly;
+    }
+
+    public String getEmbeddingsMode() {
+        return embeddingsMode;
+    }
+
+    public int getEmbeddingMaxKilobytes() {
+        return embeddingMaxKilobytes;
+    }
+
+    /**
+     * @return the size above which a report is split, 0 when reports are never split.
+     */
+    public int getSplitKilobytes() {
+        return splitKilobytes;
+    }
+
+    /**
+     * @return the URL under which externalized embeddings are served, ending with a slash.
+     */
+    public String getEmbeddingsUrl() {
+        return embeddingsUrl;
+    }
+
+    public void setEmbeddingsUrl(String embeddingsUrl) {
+        this.embeddingsUrl = embeddingsUrl;
+    }
+
+    public boolean isEnabled(boolean isJsonReport) {
+        return isFilterEnabled(isJsonReport) || splitKilobytes > 0;
+    }
+
+    public boolean isFilterEnabled(boolean isJsonReport) {
+        if (isJsonReport) {
+            return !EMBEDDINGS_KEEP.equals(embeddingsMode);
+        }
+        return !OUTPUT_KEEP.equals(junitOutputMode) || junitFailuresOnly;
+    }
+}
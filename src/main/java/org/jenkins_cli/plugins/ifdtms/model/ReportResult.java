@@ -0,0 +1,122 @@
+package org.jenkins_cli.plugins.ifdtms.model;
+
+import org.jenkins_cli.plugins.ifdtms.rest.RequestTimings;
+
+/**
+ * Outcome of one report file of an upload. Stored one per line, tab separated, so that
+ * the results of thousands of reports stay out of the build record.
+ */
+public class ReportResult {
+
+    public enum Outcome { UPLOADED, FAILED, SKIPPED }
+
+    private static final int FIELDS = 12;
+    // The whole message is on the upload page.
+    private static final int MAX_STATUS_MESSAGE_CHARS = 200;
+
+    private final String path;
+    private final Outcome outcome;
+    private final int responseCode;
+    private final String message;
+    private final RequestTimings timings;
+
+    public ReportResult(String path, Outcome outcome, int responseCode, String message, RequestTimings timings) {
+        this.path = path;
+        this.outcome = outcome;
+        this.responseCode = responseCode;
+        this.message = message != null ? message : "";
+        this.timings = timings != null ? timings : new RequestTimings();
+    }
+
+    public static ReportResult skipped(String path, String reason) {
+        return new ReportResult(path, Outcome.SKIPPED, 0, reason, null);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the timings of the request that carried the report, shared by all the reports of a batch.
+     */
+    public RequestTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * @return the one line status printed in the build log.
+     */
+    public String toStatusLine() {
+        StringBuilder line = new StringBuilder(String.format("%-8s %s", outcome, path));
+        if (outcome != Outcome.SKIPPED) {
+            line.append(String.format(" (%d in %d ms", responseCode, timings.getTotalMillis()));
+            if (timings.getQueueMillis() > 0) {
+                line.append(String.format(", waited %d ms for a request slot", timings.getQueueMillis()));
+            }
+            line.append(')');
+        }
+        if (outcome != Outcome.UPLOADED && !message.isEmpty()) {
+            String status = message.replaceAll("\\s*[\\r\\n]+\\s*", " ");
+            line.append(": ").append(status.length() > MAX_STATUS_MESSAGE_CHARS
+                    ? status.substring(0, MAX_STATUS_MESSAGE_CHARS) + "..." : status);
+        }
+        return line.toString();
+    }
+
+    public String toLine() {
+        return String.join("\t", escape(path), outcome.name(), String.valueOf(responseCode),
+                String.valueOf(timings.getQueueMillis()), String.valueOf(timings.getConnectMillis()),
+                String.valueOf(timings.getReadMillis()), String.valueOf(timings.getSendMillis()),
+                String.valueOf(timings.getWaitMillis()), String.valueOf(timings.getTotalMillis()),
+                String.valueOf(timings.getReportBytes()), String.valueOf(timings.getBodyBytes()), escape(message));
+    }
+
+    /**
+     * @return the result stored in the line, null if the line is not one.
+     */
+    public static ReportResult fromLine(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != FIELDS) {
+            return null;
+        }
+        try {
+            RequestTimings timings = new RequestTimings(Long.parseLong(fields[3]), Long.parseLong(fields[4]),
+                    Long.parseLong(fields[5]), Long.parseLong(fields[6]), Long.parseLong(fields[7]),
+                    Long.parseLong(fields[8]), Long.parseLong(fields[9]), Long.parseLong(fields[10]));
+            return new ReportResult(unescape(fields[0]), Outcome.valueOf(fields[1]), Integer.parseInt(fields[2]),
+                    unescape(fields[11]), timings);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'r' ? '\r' : next == 'n' ? '\n' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
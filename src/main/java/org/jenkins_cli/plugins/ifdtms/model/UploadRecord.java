@@ -0,0 +1,43 @@
+package org.jenkins_cli.plugins.ifdtms.model;
+
+import org.jenkins_cli.plugins.ifdtms.rest.RequestTimings;
+
+/**
+ * One report request of an upload: the reports it carried, how iTMS answered and how long it took.
+ */
+public class UploadRecord {
+
+    private final String reports;
+    private final int reportCount;
+    private final int responseCode;
+    private final boolean successful;
+    private final RequestTimings timings;
+
+    public UploadRecord(String reports, int reportCount, int responseCode, boolean successful, RequestTimings timings) {
+        this.reports = reports;
+        this.reportCount = reportCount;
+        this.responseCode = responseCode;
+        this.successful = successful;
+        this.timings = timings != null ? timings : new RequestTimings();
+    }
+
+    public String getReports() {
+        return reports;
+    }
+
+    public int getReportCount() {
+        return reportCount;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    public RequestTimings getTimings() {
+        return timings;
+    }
+}
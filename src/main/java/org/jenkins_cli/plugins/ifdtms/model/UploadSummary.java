@@ -0,0 +1,54 @@
+package org.jenkins_cli.plugins.ifdtms.model;
+
+public class UploadSummary {
+
+    private int succeeded;
+    private int failed;
+    private int skipped;
+
+    public synchronized void recordSuccess() {
+        succeeded++;
+    }
+
+    public synchronized void recordFailure() {
+        failed++;
+    }
+
+    public synchronized void recordSkipped() {
+        skipped++;
+    }
+
+    /**
+     * Counts the reports an earlier attempt uploaded or skipped, its failures were sent again.
+     */
+    public synchronized void addEarlierAttempt(UploadSummary earlier) {
+        succeeded += earlier.getSucceeded();
+        skipped += earlier.getSkipped();
+    }
+
+    public synchronized int getSucceeded() {
+        return succeeded;
+    }
+
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    public synchronized int getSkipped() {
+        return skipped;
+    }
+
+    public synchronized int getTotal() {
+        return succeeded + failed + skipped;
+    }
+
+    public synchronized boolean isSuccessful() {
+        return failed == 0;
+    }
+
+    public synchronized String toString() {
+        return String.format("%d report(s) processed: %d uploaded, %d failed, %d skipped",
+                getTotal(), succeeded, failed, skipped);
+    }
+
+}
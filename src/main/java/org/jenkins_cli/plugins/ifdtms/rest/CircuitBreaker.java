@@ -0,0 +1,95 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per iTMS server circuit breaker shared by every build of the JVM. After a run of
+ * consecutive failures the circuit opens and uploads to that server fail fast; once
+ * the open period is over a single trial request decides whether it closes again.
+ */
+public class CircuitBreaker {
+
+    private static final String PREFIX = CircuitBreaker.class.getName();
+    private static final int FAILURE_THRESHOLD = Integer.getInteger(PREFIX + ".failureThreshold", 5);
+    private static final long OPEN_MILLIS = Long.getLong(PREFIX + ".openMillis", TimeUnit.SECONDS.toMillis(30));
+
+    /**
+     * Code of the response to a request the open circuit kept from being sent, distinct from the 0 of an
+     * I/O error so that it is not retried.
+     */
+    public static final int REJECTED = -1;
+
+    private static final ConcurrentMap<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String server;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    private CircuitBreaker(String server) {
+        this.server = server;
+    }
+
+    public static CircuitBreaker forServer(String server) {
+        return BREAKERS.computeIfAbsent(server, CircuitBreaker::new);
+    }
+
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= OPEN_MILLIS) {
+                    // Let one request through to probe the server.
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // A probe is already in flight.
+                return false;
+        }
+    }
+
+    /**
+     * @return whether requests are currently refused, without letting a probe through.
+     */
+    public synchronized boolean isOpen() {
+        return state == State.HALF_OPEN
+                || (state == State.OPEN && System.currentTimeMillis() - openedAt < OPEN_MILLIS);
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Gives back a request that {@link #allowRequest()} let through but that was not sent after all,
+     * so that a probe left unsent does not keep the circuit half open.
+     */
+    public synchronized void cancelRequest() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized StandardResponse rejection() {
+        long retryIn = Math.max(0, OPEN_MILLIS - (System.currentTimeMillis() - openedAt));
+        return new StandardResponse(REJECTED, "Circuit open", String.format(
+                "%d: Circuit open: %s failed %d time(s) in a row, not sending requests for another %d s",
+                REJECTED, server, consecutiveFailures, TimeUnit.MILLISECONDS.toSeconds(retryIn)));
+    }
+}
@@ -0,0 +1,170 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Equivalent iTMS nodes serving the same data. A request to any of them may be sent to
+ * another one: the node with the fewest requests outstanding is picked among the healthy
+ * ones, and the caller moves on to the next one when a node fails. A node is unhealthy
+ * while its circuit breaker is open or after it failed its last health check.
+ */
+public class ItmsEndpoints {
+
+    private static volatile Map<String, Endpoint> endpoints = Collections.emptyMap();
+    private static final AtomicLong SELECTIONS = new AtomicLong();
+
+    private ItmsEndpoints() {
+    }
+
+    /**
+     * @param servers the base URLs of the nodes, e.g. {@code https://itms-1.example.com}
+     */
+    public static synchronized void configure(Collection<String> servers) {
+        Map<String, Endpoint> configured = new LinkedHashMap<>();
+        for (String server : servers) {
+            String key = serverOf(server);
+            if (!key.isEmpty()) {
+                // Keep the state of the nodes that stay, their requests are still outstanding.
+                configured.put(key, endpoints.getOrDefault(key, new Endpoint(key)));
+            }
+        }
+        endpoints = Collections.unmodifiableMap(configured);
+    }
+
+    public static Collection<Endpoint> getEndpoints() {
+        return endpoints.values();
+    }
+
+    /**
+     * Picks the node to send a request for the given address to.
+     *
+     * @param itmsAddress the address configured in the job
+     * @param tried       nodes already tried for this request, as returned by {@link Endpoint#getServer()}
+     * @return the node to use, null once all of them were tried. An address that is not on one
+     * of the nodes is its own single node.
+     */
+    public static Endpoint select(String itmsAddress, Set<String> tried) {
+        Map<String, Endpoint> current = endpoints;
+        String server = serverOf(itmsAddress);
+        if (!current.containsKey(server)) {
+            return tried.contains(server) ? null : new Endpoint(server);
+        }
+
+        Endpoint best = null;
+        for (Endpoint endpoint : current.values()) {
+            if (tried.contains(endpoint.server)) {
+                continue;
+            }
+            if (best == null || endpoint.compareTo(best, itmsAddress) < 0) {
+                best = endpoint;
+            }
+        }
+        if (best != null) {
+            best.lastSelected = SELECTIONS.incrementAndGet();
+        }
+        return best;
+    }
+
+    /**
+     * @return whether {@link #select} would still find a node for the address, without picking one.
+     */
+    public static boolean hasUntried(String itmsAddress, Set<String> tried) {
+        Map<String, Endpoint> current = endpoints;
+        String server = serverOf(itmsAddress);
+        if (!current.containsKey(server)) {
+            return !tried.contains(server);
+        }
+        for (String node : current.keySet()) {
+            if (!tried.contains(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return scheme, host and port of the URL, the URL itself if it has none.
+     */
+    static String serverOf(String url) {
+        String trimmed = url != null ? url.trim() : "";
+        try {
+            URI uri = URI.create(trimmed);
+            if (uri.getScheme() != null && uri.getAuthority() != null) {
+                return uri.getScheme().toLowerCase() + "://" + uri.getAuthority().toLowerCase();
+            }
+        } catch (IllegalArgumentException e) {
+            // Not a URL, it stands for itself.
+        }
+        return trimmed;
+    }
+
+    public static class Endpoint {
+        private final String server;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean healthCheckPassed = true;
+        private volatile long lastSelected;
+
+        private Endpoint(String server) {
+            this.server = server;
+        }
+
+        public String getServer() {
+            return server;
+        }
+
+        /**
+         * @return the address moved onto this node, path and query kept.
+         */
+        public String rewrite(String itmsAddress) {
+            String trimmed = itmsAddress.trim();
+            String from = serverOf(trimmed);
+            return from.equals(trimmed) || !trimmed.toLowerCase().startsWith(from)
+                    ? trimmed : server + trimmed.substring(from.length());
+        }
+
+        public boolean isHealthy(String itmsAddress) {
+            return healthCheckPassed && !CircuitBreaker.forServer(rewrite(itmsAddress)).isOpen();
+        }
+
+        public boolean isHealthCheckPassed() {
+            return healthCheckPassed;
+        }
+
+        public void setHealthCheckPassed(boolean healthCheckPassed) {
+            this.healthCheckPassed = healthCheckPassed;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public void requestStarted() {
+            outstanding.incrementAndGet();
+        }
+
+        public void requestFinished() {
+            outstanding.decrementAndGet();
+        }
+
+        // Healthy first, then fewest outstanding requests, then the least recently picked.
+        private int compareTo(Endpoint other, String itmsAddress) {
+            boolean healthy = isHealthy(itmsAddress);
+            if (healthy != other.isHealthy(itmsAddress)) {
+                return healthy ? -1 : 1;
+            }
+            int byOutstanding = Integer.compare(getOutstanding(), other.getOutstanding());
+            return byOutstanding != 0 ? byOutstanding : Long.compare(lastSelected, other.lastSelected);
+        }
+
+        public String toString() {
+            return server;
+        }
+    }
+}
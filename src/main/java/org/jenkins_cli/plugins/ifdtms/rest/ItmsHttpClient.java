@@ -0,0 +1,110 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import hidden.jth.org.apache.http.client.config.RequestConfig;
+import hidden.jth.org.apache.http.impl.client.CloseableHttpClient;
+import hidden.jth.org.apache.http.impl.client.HttpClients;
+import hidden.jth.org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import hidden.jth.org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import hudson.ProxyConfiguration;
+import hudson.init.Terminator;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JVM-wide, connection-pooled HTTP client used for all iTMS traffic, so that
+ * TCP and TLS connections are kept alive and reused across report files and builds.
+ * When reports are uploaded from an agent, the agent JVM gets its own pool.
+ * <p>
+ * On the controller the proxy set in the Jenkins configuration is used, elsewhere the
+ * proxy system properties ({@code http.proxyHost}, {@code http.nonProxyHosts}, ...).
+ */
+public final class ItmsHttpClient {
+
+    private static final Logger LOGGER = Logger.getLogger(ItmsHttpClient.class.getName());
+
+    static final int MAX_TOTAL = Integer.getInteger(ItmsHttpClient.class.getName() + ".maxTotal", 100);
+    private static final int MAX_PER_ROUTE = Integer.getInteger(ItmsHttpClient.class.getName() + ".maxPerRoute", 32);
+    private static final int IDLE_TIMEOUT_SECONDS = Integer.getInteger(ItmsHttpClient.class.getName() + ".idleTimeoutSeconds", 30);
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+    private static final int SOCKET_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(5);
+
+    private static final ProxySelector PROXY_SELECTOR = new ProxySelector() {
+        @Override
+        public List<Proxy> select(URI uri) {
+            return Collections.singletonList(proxyFor(uri));
+        }
+
+        @Override
+        public void connectFailed(URI uri, SocketAddress address, IOException e) {
+            ProxySelector system = ProxySelector.getDefault();
+            if (system != null) {
+                system.connectFailed(uri, address, e);
+            }
+        }
+    };
+
+    private static final CloseableHttpClient CLIENT;
+
+    static {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        // Re-check connections that sat in the pool for a while before reusing them.
+        connectionManager.setValidateAfterInactivity((int) TimeUnit.SECONDS.toMillis(2));
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                .setConnectionRequestTimeout(CONNECT_TIMEOUT_MILLIS)
+                .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                .build();
+
+        CLIENT = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .useSystemProperties()
+                .setRoutePlanner(new SystemDefaultRoutePlanner(PROXY_SELECTOR))
+                .build();
+    }
+
+    private ItmsHttpClient() {
+    }
+
+    public static CloseableHttpClient get() {
+        return CLIENT;
+    }
+
+    /**
+     * @return the proxy requests to that address go through, {@link Proxy#NO_PROXY} for a direct connection.
+     */
+    static Proxy proxyFor(URI uri) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        ProxyConfiguration configuration = jenkins != null ? jenkins.proxy : null;
+        if (configuration != null) {
+            return configuration.createProxy(uri.getHost());
+        }
+        ProxySelector system = ProxySelector.getDefault();
+        List<Proxy> proxies = system != null ? system.select(uri) : null;
+        return proxies == null || proxies.isEmpty() ? Proxy.NO_PROXY : proxies.get(0);
+    }
+
+    @Terminator
+    public static void shutdown() {
+        try {
+            CLIENT.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close the iTMS http client", e);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * multipart/form-data body made of the plain form fields followed by one or more
+ * report parts. Only the part headers are kept in memory, report bytes are copied
+ * from their {@link ReportContent} while the body is written.
+ */
+public class MultipartReportBody {
+
+    // Line separator required by multipart/form-data.
+    private static final String CRLF = "\r\n";
+
+    private final String boundary;
+    private final byte[] fields;
+    private final List<ReportPart> reports = new ArrayList<>();
+
+    public MultipartReportBody(Map<String, String> postData) {
+        // Just generate some unique random value.
+        this.boundary = Long.toHexString(System.currentTimeMillis()) + Long.toHexString(System.nanoTime());
+
+        StringBuilder sb = new StringBuilder();
+        postData.forEach((key, value) -> {
+            sb.append("--").append(boundary).append(CRLF);
+            sb.append("Content-Disposition: form-data; name=\"").append(key).append("\"").append(CRLF);
+            sb.append(TEXT_PLAIN_TYPE).append(StandardCharsets.UTF_8).append(CRLF);
+            sb.append(CRLF).append(value).append(CRLF);
+        });
+        this.fields = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void addReport(String fileName, ReportContent content, boolean isJsonReport) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--").append(boundary).append(CRLF);
+        sb.append("Content-Disposition: form-data; name=\"report_content\"; filename=\"").append(fileName).append("\"").append(CRLF);
+        // Text file itself must be saved in this charset!
+        sb.append(isJsonReport ? APPLICATION_JSON_TYPE : APPLICATION_XML_TYPE).append(StandardCharsets.UTF_8).append(CRLF);
+        sb.append(CRLF);
+        reports.add(new ReportPart(sb.toString().getBytes(StandardCharsets.UTF_8), content));
+    }
+
+    public String getContentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    /**
+     * @return the exact size of the body in bytes, or -1 if the size of a report is unknown.
+     */
+    public long getContentLength() throws IOException {
+        long length = fields.length + closingDelimiter().length;
+        for (ReportPart report : reports) {
+            long reportLength = report.content.getLength();
+            if (reportLength < 0) {
+                return -1;
+            }
+            // CRLF is important! It indicates end of boundary.
+            length += report.header.length + reportLength + CRLF.length();
+        }
+        return length;
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        writeTo(output, null);
+    }
+
+    /**
+     * @param timings receives the time spent reading the reports, if not null
+     */
+    void writeTo(OutputStream output, RequestTimings timings) throws IOException {
+        output.write(fields);
+        for (ReportPart report : reports) {
+            output.write(report.header);
+            try (InputStream in = report.content.open()) {
+                IOUtils.copyLarge(timings != null ? new TimedInputStream(in, timings) : in, output);
+            }
+            output.write(CRLF.getBytes(StandardCharsets.US_ASCII));
+        }
+        // End of multipart/form-data.
+        output.write(closingDelimiter());
+        output.flush();
+    }
+
+    /**
+     * @return the body as a stream, each report is opened once the bytes before it were read.
+     */
+    public InputStream open() {
+        return new BodyInputStream();
+    }
+
+    /**
+     * @return whether every report is a local file, so that the body can be split into {@link #segments()}.
+     */
+    boolean isLocal() {
+        for (ReportPart report : reports) {
+            if (report.content.getFile() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a local body into the multipart framing, kept as bytes, and the report files, so
+     * that a writer can move the files with {@link java.nio.channels.FileChannel#transferTo},
+     * which does not copy them through the heap when the target is a socket.
+     *
+     * @return the segments of the body in order.
+     */
+    List<Segment> segments() {
+        List<Segment> segments = new ArrayList<>();
+        segments.add(new Segment(fields, null));
+        for (ReportPart report : reports) {
+            segments.add(new Segment(report.header, null));
+            segments.add(new Segment(null, report.content.getFile()));
+            segments.add(new Segment(CRLF.getBytes(StandardCharsets.US_ASCII), null));
+        }
+        segments.add(new Segment(closingDelimiter(), null));
+        return segments;
+    }
+
+    private byte[] closingDelimiter() {
+        return ("--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Adds the time spent in reads to the timings of the request.
+     */
+    private static class TimedInputStream extends FilterInputStream {
+        private final RequestTimings timings;
+
+        private TimedInputStream(InputStream in, RequestTimings timings) {
+            super(in);
+            this.timings = timings;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            timings.reportRead(System.nanoTime() - start, b < 0 ? 0 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int read = super.read(b, off, len);
+            timings.reportRead(System.nanoTime() - start, Math.max(read, 0));
+            return read;
+        }
+    }
+
+    /**
+     * Reads the fields, then the header, the content and the line break of every report, then the closing delimiter.
+     */
+    private class BodyInputStream extends InputStream {
+        // Index of the piece after the current one.
+        private int next = 1;
+        private InputStream current = new ByteArrayInputStream(fields);
+
+        @Override
+        public int read() throws IOException {
+            while (current != null) {
+                int b = current.read();
+                if (b >= 0) {
+                    return b;
+                }
+                advance();
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (current != null) {
+                int read = current.read(b, off, len);
+                if (read >= 0) {
+                    return read;
+                }
+                advance();
+            }
+            return -1;
+        }
+
+        private void advance() throws IOException {
+            current.close();
+            current = null;
+            int piece = next++;
+            if (piece <= reports.size() * 3) {
+                ReportPart report = reports.get((piece - 1) / 3);
+                switch ((piece - 1) % 3) {
+                    case 0:
+                        current = new ByteArrayInputStream(report.header);
+                        break;
+                    case 1:
+                        current = report.content.open();
+                        break;
+                    default:
+                        current = new ByteArrayInputStream(CRLF.getBytes(StandardCharsets.US_ASCII));
+                }
+            } else if (piece == reports.size() * 3 + 1) {
+                current = new ByteArrayInputStream(closingDelimiter());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Either bytes or a local report file.
+     */
+    static class Segment {
+        final byte[] bytes;
+        final File file;
+
+        private Segment(byte[] bytes, File file) {
+            this.bytes = bytes;
+            this.file = file;
+        }
+    }
+
+    private static class ReportPart {
+        private final byte[] header;
+        private final ReportContent content;
+
+        private ReportPart(byte[] header, ReportContent content) {
+            this.header = header;
+            this.content = content;
+        }
+    }
+}
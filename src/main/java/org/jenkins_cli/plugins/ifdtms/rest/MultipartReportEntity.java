@@ -0,0 +1,61 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import hidden.jth.org.apache.http.entity.AbstractHttpEntity;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes a {@link MultipartReportBody} directly onto the pooled connection.
+ * The entity is repeatable because every report is reopened from its source.
+ */
+class MultipartReportEntity extends AbstractHttpEntity {
+
+    private final MultipartReportBody body;
+    private final long contentLength;
+    private final RequestTimings timings;
+
+    MultipartReportEntity(MultipartReportBody body, RequestTimings timings) throws IOException {
+        this.body = body;
+        this.timings = timings;
+        this.contentLength = body.getContentLength();
+        setContentType(body.getContentType());
+        setChunked(contentLength < 0);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return a new stream over the whole body, for callers that read the entity instead of writing it.
+     */
+    @Override
+    public InputStream getContent() {
+        return body.open();
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        timings.sendStarted();
+        CountingOutputStream counting = new CountingOutputStream(output);
+        body.writeTo(counting, timings);
+        timings.sendFinished(counting.getByteCount());
+    }
+
+    /**
+     * @return false, the entity is not backed by a single stream and can be read or written again.
+     */
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,491 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends bodies made of local report files over plain HTTP without holding a thread per request:
+ * one selector thread drives every request, and the files go from the page cache onto the socket
+ * with {@link FileChannel#transferTo}. Only used when nothing has to touch the report bytes on the
+ * way: no TLS, no compression and no proxy for the address. Each upload has its own connection,
+ * so small bodies stay on the pooled client.
+ * <p>
+ * The response is read while the body is still being sent, so a server that answers early, with
+ * 413 or 401, and closes the connection is reported with its status rather than as a broken pipe.
+ */
+final class NioTransport implements ReportTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(NioTransport.class.getName());
+
+    private static final String PREFIX = NioTransport.class.getName();
+    private static final boolean ENABLED = !Boolean.getBoolean(PREFIX + ".disabled");
+    private static final long MIN_BYTES = Long.getLong(PREFIX + ".minBytes", 1024 * 1024);
+    // How often the deadlines are checked when no socket is ready.
+    private static final long TICK_MILLIS = 100;
+    private static final int MAX_HEAD_BYTES = 64 * 1024;
+    // UTF-8 takes at most 4 bytes per character.
+    private static final int MAX_BODY_BYTES = RequestApi.MAX_RESPONSE_CHARS * 4;
+    private static final byte[] END_OF_HEAD = {'\r', '\n', '\r', '\n'};
+
+    static final NioTransport INSTANCE = new NioTransport();
+
+    private final Queue<Exchange> registrations = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+
+    private NioTransport() {
+    }
+
+    static boolean isApplicable(String url, MultipartReportBody body, boolean gzip) throws IOException {
+        if (!ENABLED || gzip || !url.regionMatches(true, 0, "http://", 0, 7) || !body.isLocal()) {
+            return false;
+        }
+        return body.getContentLength() >= MIN_BYTES
+                && ItmsHttpClient.proxyFor(URI.create(url)).type() == Proxy.Type.DIRECT;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> post(String url, String token, MultipartReportBody body, boolean gzip,
+                                                     TransportTimeouts timeouts, RequestTimings timings) {
+        CompletableFuture<TransportResponse> response = new CompletableFuture<>();
+        try {
+            if (gzip || !body.isLocal()) {
+                throw new IOException("Only plain bodies of local files are sent without the http client");
+            }
+            registrations.add(new Exchange(url, token, body, timeouts, timings, response));
+            selector().wakeup();
+        } catch (IOException | RuntimeException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    private synchronized Selector selector() throws IOException {
+        if (selector == null) {
+            Selector opened = Selector.open();
+            Thread thread = new Thread(() -> run(opened), "iTMS NIO transport");
+            thread.setDaemon(true);
+            thread.start();
+            selector = opened;
+        }
+        return selector;
+    }
+
+    private void run(Selector selector) {
+        while (true) {
+            try {
+                selector.select(TICK_MILLIS);
+                Exchange registered;
+                while ((registered = registrations.poll()) != null) {
+                    registered.register(selector);
+                }
+                Iterator<SelectionKey> ready = selector.selectedKeys().iterator();
+                while (ready.hasNext()) {
+                    SelectionKey key = ready.next();
+                    ready.remove();
+                    ((Exchange) key.attachment()).handle(key);
+                }
+                long now = System.nanoTime();
+                for (SelectionKey key : selector.keys()) {
+                    ((Exchange) key.attachment()).checkDeadlines(now);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unexpected failure of the iTMS NIO transport", e);
+            }
+        }
+    }
+
+    /**
+     * One request and its response, only touched by the selector thread once registered.
+     */
+    private static final class Exchange {
+        private final String server;
+        private final TransportTimeouts timeouts;
+        private final RequestTimings timings;
+        private final CompletableFuture<TransportResponse> response;
+        private final SocketChannel channel;
+        private final Deque<MultipartReportBody.Segment> segments;
+        private final int headBytes;
+        private final long startNanos = System.nanoTime();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        private boolean connected;
+        private long progressNanos;
+        private ByteBuffer bytes;
+        private FileChannel file;
+        private long filePosition;
+        private long written;
+
+        private int headLength = -1;
+        private int code;
+        private String reason;
+        private long retryAfterMillis = -1;
+        private boolean chunked;
+        private long contentLength = -1;
+
+        private Exchange(String url, String token, MultipartReportBody body, TransportTimeouts timeouts,
+                         RequestTimings timings, CompletableFuture<TransportResponse> response) throws IOException {
+            URI uri = URI.create(url);
+            int port = uri.getPort() > 0 ? uri.getPort() : 80;
+            String path = (uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath())
+                    + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+            this.server = uri.getHost() + ":" + port;
+            this.timeouts = timeouts;
+            this.timings = timings;
+            this.response = response;
+
+            StringBuilder head = new StringBuilder();
+            head.append("POST ").append(path).append(" HTTP/1.1\r\n");
+            head.append("Host: ").append(uri.getHost()).append(uri.getPort() > 0 ? ":" + uri.getPort() : "").append("\r\n");
+            head.append("Authorization: ").append(token).append("\r\n");
+            head.append("Content-Type: ").append(body.getContentType()).append("\r\n");
+            head.append("Content-Length: ").append(body.getContentLength()).append("\r\n");
+            head.append("Connection: close\r\n\r\n");
+            this.bytes = ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            this.headBytes = bytes.remaining();
+            this.segments = new ArrayDeque<>(body.segments());
+
+            SocketChannel opened = SocketChannel.open();
+            try {
+                opened.configureBlocking(false);
+                opened.socket().setTcpNoDelay(true);
+                connected = opened.connect(new InetSocketAddress(uri.getHost(), port));
+            } catch (IOException | RuntimeException e) {
+                opened.close();
+                throw e;
+            }
+            this.channel = opened;
+        }
+
+        private void register(Selector selector) {
+            if (response.isDone()) {
+                close(null);
+                return;
+            }
+            try {
+                SelectionKey key = channel.register(selector,
+                        connected ? SelectionKey.OP_WRITE | SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+                if (connected) {
+                    sendStarted();
+                }
+                // Cancelled before it was registered.
+                if (response.isDone()) {
+                    close(key);
+                }
+            } catch (IOException e) {
+                fail(null, e);
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            try {
+                if (response.isDone()) {
+                    close(key);
+                } else if (key.isConnectable()) {
+                    if (channel.finishConnect()) {
+                        connected = true;
+                        sendStarted();
+                        key.interestOps(SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+                    }
+                } else {
+                    if (key.isReadable()) {
+                        read(key);
+                    }
+                    if (!response.isDone() && key.isValid() && key.isWritable()) {
+                        write(key);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!respondEarly(key)) {
+                    fail(key, e);
+                }
+            }
+        }
+
+        /**
+         * Completes the response with what the server answered before the connection failed, if anything.
+         */
+        private boolean respondEarly(SelectionKey key) {
+            if (!connected) {
+                return false;
+            }
+            try {
+                while (!response.isDone() && channel.isOpen() && read(key) > 0) {
+                    // Takes what is left in the receive buffer.
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "No more of the response from " + server, e);
+            }
+            if (!response.isDone() && headLength >= 0) {
+                try {
+                    complete(key, true);
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+            return response.isDone() && !response.isCompletedExceptionally();
+        }
+
+        private void sendStarted() {
+            timings.sendStarted();
+            progressNanos = System.nanoTime();
+        }
+
+        private void write(SelectionKey key) throws IOException {
+            while (true) {
+                if (bytes != null) {
+                    int count = channel.write(bytes);
+                    progressed(count);
+                    if (bytes.hasRemaining()) {
+                        return;
+                    }
+                    bytes = null;
+                } else if (file != null) {
+                    long start = System.nanoTime();
+                    long count = file.transferTo(filePosition, file.size() - filePosition, channel);
+                    // Reading and sending are one step here.
+                    timings.reportRead(System.nanoTime() - start, count);
+                    progressed(count);
+                    filePosition += count;
+                    if (filePosition < file.size()) {
+                        // The socket buffer is full, wait until it drains.
+                        return;
+                    }
+                    file.close();
+                    file = null;
+                } else if (!segments.isEmpty()) {
+                    MultipartReportBody.Segment segment = segments.poll();
+                    if (segment.bytes != null) {
+                        bytes = ByteBuffer.wrap(segment.bytes);
+                    } else {
+                        file = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ);
+                        filePosition = 0;
+                    }
+                } else {
+                    timings.sendFinished(written - headBytes);
+                    progressNanos = System.nanoTime();
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        }
+
+        private void progressed(long count) {
+            if (count > 0) {
+                written += count;
+                progressNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * @return the number of bytes read, -1 at the end of the stream.
+         */
+        private int read(SelectionKey key) throws IOException {
+            readBuffer.clear();
+            int count = channel.read(readBuffer);
+            if (count < 0) {
+                if (headLength < 0) {
+                    throw new EOFException("Connection closed while reading the response");
+                }
+                complete(key, true);
+                return count;
+            }
+            if (count == 0) {
+                return count;
+            }
+            if (received.size() == 0) {
+                timings.responseReceived();
+            }
+            progressNanos = System.nanoTime();
+            received.write(readBuffer.array(), 0, count);
+
+            if (headLength < 0) {
+                byte[] data = received.toByteArray();
+                int end = indexOf(data, END_OF_HEAD);
+                if (end < 0) {
+                    if (data.length > MAX_HEAD_BYTES) {
+                        throw new IOException("Response headers from " + server + " too large");
+                    }
+                    return count;
+                }
+                parseHead(new String(data, 0, end, StandardCharsets.ISO_8859_1));
+                headLength = end + END_OF_HEAD.length;
+            }
+            complete(key, false);
+            return count;
+        }
+
+        private void parseHead(String head) throws IOException {
+            String[] lines = head.split("\r\n");
+            String[] status = lines[0].split(" ", 3);
+            if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+                throw new IOException("Not an HTTP response: " + lines[0]);
+            }
+            code = parseNumber(status[1], 10);
+            reason = status.length > 2 ? status[2] : "";
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+                String value = lines[i].substring(colon + 1).trim();
+                if (name.equals("retry-after")) {
+                    retryAfterMillis = RequestApi.parseRetryAfter(value);
+                } else if (name.equals("transfer-encoding")) {
+                    chunked = value.toLowerCase(Locale.ENGLISH).contains("chunked");
+                } else if (name.equals("content-length")) {
+                    contentLength = parseNumber(value, 10);
+                }
+            }
+        }
+
+        /**
+         * Completes the response once its body is complete, or once enough of it was read.
+         *
+         * @param closed whether the server closed the connection, the body ends there
+         */
+        private void complete(SelectionKey key, boolean closed) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            // Only the body of an error response is kept.
+            boolean ended = code < 400;
+            if (!ended) {
+                byte[] data = received.toByteArray();
+                if (chunked) {
+                    ended = decodeChunked(data, headLength, body);
+                } else {
+                    body.write(data, headLength, data.length - headLength);
+                    ended = contentLength >= 0 && body.size() >= contentLength;
+                }
+                ended |= closed || body.size() >= MAX_BODY_BYTES;
+            }
+            if (!ended) {
+                return;
+            }
+            String text = new String(body.toByteArray(), 0, Math.min(body.size(), MAX_BODY_BYTES), StandardCharsets.UTF_8);
+            if (text.length() > RequestApi.MAX_RESPONSE_CHARS) {
+                text = text.substring(0, RequestApi.MAX_RESPONSE_CHARS) + "... [truncated]";
+            }
+            response.complete(new TransportResponse(code, reason, text, retryAfterMillis));
+            close(key);
+        }
+
+        /**
+         * @return whether the last chunk was reached.
+         */
+        private static boolean decodeChunked(byte[] data, int from, ByteArrayOutputStream body) throws IOException {
+            int position = from;
+            while (body.size() < MAX_BODY_BYTES) {
+                int lineEnd = indexOf(data, position, new byte[]{'\r', '\n'});
+                if (lineEnd < 0) {
+                    return false;
+                }
+                String sizeLine = new String(data, position, lineEnd - position, StandardCharsets.ISO_8859_1);
+                int extension = sizeLine.indexOf(';');
+                int size = parseNumber((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+                if (size == 0) {
+                    return true;
+                }
+                position = lineEnd + 2;
+                int available = Math.min(size, data.length - position);
+                body.write(data, position, available);
+                if (available < size) {
+                    return false;
+                }
+                position += size + 2;
+            }
+            return true;
+        }
+
+        private void checkDeadlines(long now) {
+            if (response.isDone()) {
+                close(null);
+                return;
+            }
+            String timeout = null;
+            if (expired(now, startNanos, timeouts.getTotalMillis())) {
+                timeout = "No response from " + server + " within " + timeouts.getTotalMillis() + " ms";
+            } else if (!connected && expired(now, startNanos, timeouts.getConnectMillis())) {
+                timeout = "Connect to " + server + " timed out after " + timeouts.getConnectMillis() + " ms";
+            } else if (connected && expired(now, progressNanos, timeouts.getReadMillis())) {
+                timeout = "No progress with " + server + " for " + timeouts.getReadMillis() + " ms";
+            }
+            if (timeout != null) {
+                fail(null, new SocketTimeoutException(timeout));
+            }
+        }
+
+        private static boolean expired(long now, long since, long budgetMillis) {
+            return budgetMillis > 0 && now - since > TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        }
+
+        private void fail(SelectionKey key, Throwable error) {
+            LOGGER.log(Level.FINE, "Report request to " + server + " failed", error);
+            response.completeExceptionally(error);
+            close(key);
+        }
+
+        private void close(SelectionKey key) {
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                // Also cancels the key of the channel.
+                channel.close();
+                if (file != null) {
+                    file.close();
+                    file = null;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close the connection to " + server, e);
+            }
+        }
+
+        private static int parseNumber(String value, int radix) throws IOException {
+            try {
+                return Integer.parseInt(value, radix);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed HTTP response: " + value, e);
+            }
+        }
+
+        private static int indexOf(byte[] data, byte[] pattern) {
+            return indexOf(data, 0, pattern);
+        }
+
+        private static int indexOf(byte[] data, int from, byte[] pattern) {
+            outer:
+            for (int i = from; i <= data.length - pattern.length; i++) {
+                for (int j = 0; j < pattern.length; j++) {
+                    if (data[i + j] != pattern[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+}
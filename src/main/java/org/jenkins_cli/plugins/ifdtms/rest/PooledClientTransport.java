@@ -0,0 +1,113 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import hidden.jth.org.apache.http.Header;
+import hidden.jth.org.apache.http.HttpEntity;
+import hidden.jth.org.apache.http.client.config.RequestConfig;
+import hidden.jth.org.apache.http.client.entity.GzipCompressingEntity;
+import hidden.jth.org.apache.http.client.methods.CloseableHttpResponse;
+import hidden.jth.org.apache.http.client.methods.HttpPost;
+import hidden.jth.org.apache.http.util.EntityUtils;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends reports on the connection-pooled {@link ItmsHttpClient}, which covers TLS, proxies and
+ * compression. The client blocks, so requests run on a bounded pool of threads of this transport,
+ * and a request over its total budget is aborted, which frees its thread and its connection.
+ * The budget includes the time spent waiting for a thread.
+ */
+final class PooledClientTransport implements ReportTransport {
+
+    static final PooledClientTransport INSTANCE = new PooledClientTransport();
+
+    // No more threads than the client has connections, further requests would only wait for one.
+    private static final int THREADS = Integer.getInteger(PooledClientTransport.class.getName() + ".threads",
+            ItmsHttpClient.MAX_TOTAL);
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new NamingThreadFactory(new DaemonThreadFactory(), "iTMS http client request"));
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private PooledClientTransport() {
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> post(String url, String token, MultipartReportBody body, boolean gzip,
+                                                     TransportTimeouts timeouts, RequestTimings timings) {
+        CompletableFuture<TransportResponse> response = new CompletableFuture<>();
+        HttpPost request = new HttpPost(url);
+        request.addHeader("Authorization", token);
+        request.setConfig(requestConfig(timeouts));
+        try {
+            HttpEntity entity = new MultipartReportEntity(body, timings);
+            // The report is streamed onto the pooled connection, compressed on the fly if requested.
+            request.setEntity(gzip ? new GzipCompressingEntity(entity) : entity);
+        } catch (IOException e) {
+            response.completeExceptionally(e);
+            return response;
+        }
+
+        EXECUTOR.execute(() -> {
+            if (response.isDone()) {
+                // Out of time or cancelled while queued.
+                return;
+            }
+            try {
+                response.complete(execute(request, timings));
+            } catch (IOException | RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        });
+        ScheduledFuture<?> deadline = timeouts.getTotalMillis() > 0 ? TransportTimer.schedule(() ->
+                response.completeExceptionally(new SocketTimeoutException("No response from " + url + " within "
+                        + timeouts.getTotalMillis() + " ms")), timeouts.getTotalMillis()) : null;
+        response.whenComplete((result, error) -> {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            if (error != null) {
+                // Closes the connection the request is blocked on, if any.
+                request.abort();
+            }
+        });
+        return response;
+    }
+
+    static RequestConfig requestConfig(TransportTimeouts timeouts) {
+        return RequestConfig.custom()
+                .setConnectTimeout((int) timeouts.getConnectMillis())
+                .setConnectionRequestTimeout((int) timeouts.getConnectMillis())
+                .setSocketTimeout((int) timeouts.getReadMillis())
+                .build();
+    }
+
+    private static TransportResponse execute(HttpPost request, RequestTimings timings) throws IOException {
+        try (CloseableHttpResponse httpResponse = ItmsHttpClient.get().execute(request)) {
+            timings.responseReceived();
+            int responseCode = httpResponse.getStatusLine().getStatusCode();
+            Header retryAfter = httpResponse.getFirstHeader("Retry-After");
+            HttpEntity responseEntity = httpResponse.getEntity();
+            String body = "";
+            if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST && responseEntity != null) {
+                body = RequestApi.readBounded(responseEntity, StandardCharsets.UTF_8);
+            } else {
+                EntityUtils.consume(responseEntity);
+            }
+            return new TransportResponse(responseCode, httpResponse.getStatusLine().getReasonPhrase(), body,
+                    retryAfter != null && retryAfter.getValue() != null
+                            ? RequestApi.parseRetryAfter(retryAfter.getValue()) : -1);
+        }
+    }
+}
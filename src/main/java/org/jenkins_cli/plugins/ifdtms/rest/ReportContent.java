@@ -0,0 +1,62 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * Source of the bytes of a single report file. The content is opened lazily and
+ * streamed into the request body so that reports are never held in memory.
+ */
+public interface ReportContent {
+
+    InputStream open() throws IOException;
+
+    /**
+     * @return the number of bytes {@link #open()} will produce, or -1 if unknown.
+     */
+    long getLength() throws IOException;
+
+    /**
+     * @return the local file holding exactly the bytes of the report, or null if there is none.
+     * The body of a local file can be sent without being copied through the heap.
+     */
+    default File getFile() {
+        return null;
+    }
+
+    static ReportContent of(final byte[] bytes) {
+        return new ReportContent() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(bytes);
+            }
+
+            @Override
+            public long getLength() {
+                return bytes.length;
+            }
+        };
+    }
+
+    static ReportContent of(final File file) {
+        return new ReportContent() {
+            @Override
+            public InputStream open() throws IOException {
+                return Files.newInputStream(file.toPath());
+            }
+
+            @Override
+            public long getLength() {
+                return file.length();
+            }
+
+            @Override
+            public File getFile() {
+                return file;
+            }
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends one multipart report request. The calling thread is not held while the request
+ * is in flight, the returned future completes with the response.
+ * <p>
+ * A transport enforces the budgets it is given: the future completes exceptionally with a
+ * {@link java.net.SocketTimeoutException} once one is exceeded, and the request is dropped.
+ * Cancelling the future drops the request as well.
+ */
+public interface ReportTransport {
+
+    /**
+     * @param gzip    whether to compress the body on the fly
+     * @param timings receives the phases of the request, started by the caller
+     * @return the response, with at most {@link RequestApi#MAX_RESPONSE_CHARS} characters of an error body.
+     */
+    CompletableFuture<TransportResponse> post(String url, String token, MultipartReportBody body, boolean gzip,
+                                              TransportTimeouts timeouts, RequestTimings timings);
+}
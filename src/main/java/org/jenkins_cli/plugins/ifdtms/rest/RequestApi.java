@@ -2,30 +2,73 @@ package org.jenkins_cli.plugins.ifdtms.rest;
 
 import hidden.jth.org.apache.http.HttpEntity;
 import hidden.jth.org.apache.http.HttpResponse;
+import hidden.jth.org.apache.http.client.config.RequestConfig;
+import hidden.jth.org.apache.http.client.methods.CloseableHttpResponse;
+import hidden.jth.org.apache.http.client.methods.HttpGet;
 import hidden.jth.org.apache.http.client.methods.HttpPost;
+import hidden.jth.org.apache.http.client.utils.DateUtils;
+import hidden.jth.org.apache.http.entity.ContentType;
 import hidden.jth.org.apache.http.entity.StringEntity;
 import hidden.jth.org.apache.http.impl.client.CloseableHttpClient;
-import hidden.jth.org.apache.http.impl.client.HttpClientBuilder;
+import hidden.jth.org.apache.http.util.EntityUtils;
 import net.sf.json.JSONObject;
+import org.jenkins_cli.plugins.ifdtms.util.ExpiringCache;
 
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
 
 public class RequestApi {
 
+    private static final Logger LOGGER = Logger.getLogger(RequestApi.class.getName());
+
+    // Longest part of a response body kept, iTMS error pages can be large and end up in every build log.
+    static final int MAX_RESPONSE_CHARS = Integer.getInteger(RequestApi.class.getName() + ".maxResponseChars", 1024);
+    // Servers that refused a compressed body, sent plain bodies for a while.
+    private static final ExpiringCache<Boolean> GZIP_REJECTING_SERVERS = new ExpiringCache<>(
+            Integer.getInteger(RequestApi.class.getName() + ".gzipRejectionsSize", 1000),
+            Long.getLong(RequestApi.class.getName() + ".gzipRejectionMillis", TimeUnit.HOURS.toMillis(1)));
+    // A 400 whose body matches this is about the compression of the body, not about its content.
+    private static final Pattern ENCODING_ERROR = Pattern.compile("(?i)content-?\\s*encoding|gzip");
+
     private CloseableHttpClient httpClient;
-    URLConnection connection;
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private TransportTimeouts timeouts = TransportTimeouts.DEFAULT;
+    // Null to pick the transport per request.
+    private ReportTransport transport;
 
     public RequestApi() {
-        httpClient = HttpClientBuilder.create().build();
+        httpClient = ItmsHttpClient.get();
+    }
+
+    public RequestApi(RetryPolicy retryPolicy) {
+        this();
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RequestApi withTimeouts(TransportTimeouts timeouts) {
+        this.timeouts = timeouts;
+        return this;
+    }
+
+    /**
+     * Sends the report requests with the given transport, instead of picking one for each request.
+     */
+    public RequestApi withTransport(ReportTransport transport) {
+        this.transport = transport;
+        return this;
     }
 
     public StandardResponse sendAuthRequest(String baseUrl, String token, JSONObject postData) {
@@ -47,22 +90,38 @@ public class RequestApi {
     }
 
     private StandardResponse createPOSTRequest(HttpPost request) {
+        request.setConfig(PooledClientTransport.requestConfig(timeouts));
         StandardResponse response = new StandardResponse();
-        try {
-            HttpResponse httpResponse = httpClient.execute(request);
+        // Closing the response hands the connection back to the shared pool.
+        try (CloseableHttpResponse httpResponse = httpClient.execute(request)) {
             response = readResponse(httpResponse);
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            try {
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
         }
         return response;
     }
 
+    /**
+     * Asks a server for its root page, to tell whether it is up.
+     *
+     * @return the response code, 0 if no response came within the timeout.
+     */
+    public int probe(String serverUrl, int timeoutMillis) {
+        HttpGet request = new HttpGet(serverUrl.endsWith("/") ? serverUrl : serverUrl + "/");
+        request.setConfig(RequestConfig.custom()
+                .setConnectTimeout(timeoutMillis)
+                .setConnectionRequestTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis)
+                .build());
+        try (CloseableHttpResponse httpResponse = httpClient.execute(request)) {
+            EntityUtils.consume(httpResponse.getEntity());
+            return httpResponse.getStatusLine().getStatusCode();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to reach " + serverUrl, e);
+            return 0;
+        }
+    }
+
     private void setBodyRequest(HttpPost request, JSONObject postData) {
         StringEntity params = null;
         try {
@@ -73,96 +132,214 @@ public class RequestApi {
         request.setEntity(params);
     }
 
-    private StandardResponse readResponse(HttpResponse httpResponse) {
-        StringBuilder sb = null;
+    StandardResponse readResponse(HttpResponse httpResponse) {
+        String body = "";
         try {
-            HttpEntity entity = httpResponse.getEntity();
-            InputStream is = entity.getContent();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.ISO_8859_1), 8);
-            sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null)
-                sb.append(line).append("\n");
-            is.close();
-            reader.close();
+            body = readBounded(httpResponse.getEntity(), StandardCharsets.ISO_8859_1);
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-        assert sb != null;
         return new StandardResponse(httpResponse.getStatusLine().getStatusCode(),
-                httpResponse.getStatusLine().getReasonPhrase(), sb.toString());
+                httpResponse.getStatusLine().getReasonPhrase(), body);
+    }
+
+    /**
+     * Reads at most {@link #MAX_RESPONSE_CHARS} characters of a response body. The rest is
+     * discarded without being decoded, the connection still goes back to the pool.
+     */
+    static String readBounded(HttpEntity entity, Charset defaultCharset) throws IOException {
+        if (entity == null) {
+            return "";
+        }
+        ContentType contentType = ContentType.get(entity);
+        Charset charset = contentType != null && contentType.getCharset() != null
+                ? contentType.getCharset() : defaultCharset;
+        StringBuilder body = new StringBuilder();
+        try (Reader reader = new InputStreamReader(entity.getContent(), charset)) {
+            char[] buffer = new char[Math.min(MAX_RESPONSE_CHARS + 1, 8192)];
+            int read;
+            while (body.length() <= MAX_RESPONSE_CHARS
+                    && (read = reader.read(buffer, 0, Math.min(buffer.length, MAX_RESPONSE_CHARS + 1 - body.length()))) >= 0) {
+                body.append(buffer, 0, read);
+            }
+            if (body.length() > MAX_RESPONSE_CHARS) {
+                body.setLength(MAX_RESPONSE_CHARS);
+                body.append("... [truncated]");
+            }
+        }
+        return body.toString();
     }
 
     public StandardResponse sendReportToITMS(String baseUrl, String token, Map<String, String> postData,
                                              String fileName, String reportContent, boolean isJsonReport) {
-        // Just generate some unique random value.
-        String boundary = Long.toHexString(System.currentTimeMillis());
-        // Line separator required by multipart/form-data.
-        String CRLF = "\r\n";
+        return sendReportToITMS(baseUrl, token, postData, fileName,
+                ReportContent.of(reportContent.getBytes(StandardCharsets.UTF_8)), isJsonReport);
+    }
+
+    public StandardResponse sendReportToITMS(String baseUrl, String token, Map<String, String> postData,
+                                             String fileName, ReportContent reportContent, boolean isJsonReport) {
+        MultipartReportBody body = new MultipartReportBody(postData);
+        body.addReport(fileName, reportContent, isJsonReport);
+        return sendReportToITMS(baseUrl, token, body);
+    }
 
+    public StandardResponse sendReportToITMS(String baseUrl, String token, MultipartReportBody body) {
+        return sendReportToITMS(baseUrl, token, body, COMPRESSION_NONE);
+    }
+
+    public StandardResponse sendReportToITMS(String baseUrl, String token, MultipartReportBody body, String compression) {
+        CompletableFuture<StandardResponse> response = sendReportToITMSAsync(baseUrl, token, body, compression);
         try {
-            connection = new URL(baseUrl).openConnection();
-            connection.setDoOutput(true);
-            connection.setRequestProperty("Authorization", token);
-            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-        } catch (IOException e) {
-            e.printStackTrace();
+            return response.get();
+        } catch (InterruptedException e) {
+            // Drops the request in flight, no retry follows.
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            return new StandardResponse(0, null, String.format("%d: %s: %s", 0, null, e));
+        } catch (ExecutionException e) {
+            return new StandardResponse(0, null, String.format("%d: %s: %s", 0, null, e.getCause()));
         }
+    }
 
+    /**
+     * Sends the report request, retrying it as the retry policy allows. No thread waits for
+     * the responses or sleeps between retries. Cancelling the returned future drops the
+     * request in flight and the remaining retries.
+     */
+    public CompletableFuture<StandardResponse> sendReportToITMSAsync(String baseUrl, String token,
+                                                                     MultipartReportBody body, String compression) {
+        boolean autoCompression = COMPRESSION_AUTO.equals(compression);
+        boolean gzip = COMPRESSION_GZIP.equals(compression)
+                || (autoCompression && GZIP_REJECTING_SERVERS.getIfPresent(baseUrl) == null);
 
-        try (OutputStream output = connection.getOutputStream();
-             PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), true)) {
-            // Send normal param.
-            postData.forEach((key, value) -> {
-                writer.append("--").append(boundary).append(CRLF);
-                writer.append("Content-Disposition: form-data; name=\"").append(key).append("\"").append(CRLF);
-                writer.append(TEXT_PLAIN_TYPE).append(String.valueOf(StandardCharsets.UTF_8)).append(CRLF);
-                writer.append(CRLF).append(value).append(CRLF).flush();
-            });
-
-            // Send file.
-            writer.append("--").append(boundary).append(CRLF);
-            writer.append("Content-Disposition: form-data; name=\"report_content\"; filename=\"").append(fileName).append("\"").append(CRLF);
-            // Text file itself must be saved in this charset!
-            writer.append(isJsonReport ? APPLICATION_JSON_TYPE : APPLICATION_XML_TYPE + StandardCharsets.UTF_8).append(CRLF);
-            writer.append(CRLF).flush();
-            
-            output.write(reportContent.getBytes("UTF-8"));
-            
-            // Important before continuing with writer!
-            output.flush();
-            // CRLF is important! It indicates end of boundary.
-            writer.append(CRLF).flush();
-
-            // End of multipart/form-data.
-            writer.append("--").append(boundary).append("--").append(CRLF).flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+        // One total budget for the request and all of its retries.
+        long deadline = timeouts.getTotalMillis() > 0
+                ? System.currentTimeMillis() + timeouts.getTotalMillis() : Long.MAX_VALUE;
+        CompletableFuture<StandardResponse> result = new CompletableFuture<>();
+        postMultipart(baseUrl, token, body, gzip, result, deadline, 0, null).thenCompose(response -> {
+            if (gzip && autoCompression && isCompressionRejected(response)) {
+                // The server does not understand compressed bodies, remember that and send it plain.
+                GZIP_REJECTING_SERVERS.put(baseUrl, Boolean.TRUE);
+                return postMultipart(baseUrl, token, body, false, result, deadline, 0, response);
+            }
+            return CompletableFuture.completedFuture(response);
+        }).whenComplete((response, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(response);
+            }
+        });
+        return result;
+    }
+
+    static boolean isCompressionRejected(StandardResponse response) {
+        return response.getCode() == HttpURLConnection.HTTP_UNSUPPORTED_TYPE
+                || (response.getCode() == HttpURLConnection.HTTP_BAD_REQUEST && response.getMessage() != null
+                && ENCODING_ERROR.matcher(response.getMessage()).find());
+    }
+
+    /**
+     * Forgets which servers refused compressed bodies, once the global configuration changed.
+     */
+    public static void invalidateGzipRejections() {
+        GZIP_REJECTING_SERVERS.invalidateAll();
+    }
+
+    /**
+     * @param caller   completed or cancelled by the caller once it no longer waits for the response
+     * @param deadline when the total budget of the request runs out, {@link Long#MAX_VALUE} for none
+     * @param previous response of the last attempt, returned if no further attempt is made
+     */
+    private CompletableFuture<StandardResponse> postMultipart(String baseUrl, String token, MultipartReportBody body,
+                                                              boolean gzip, CompletableFuture<?> caller, long deadline,
+                                                              int retry, StandardResponse previous) {
+        CircuitBreaker circuitBreaker = CircuitBreaker.forServer(baseUrl);
+        long remainingMillis = deadline - System.currentTimeMillis();
+        if (caller.isDone() || remainingMillis <= 0 || !circuitBreaker.allowRequest()) {
+            return CompletableFuture.completedFuture(previous != null ? previous : circuitBreaker.rejection());
         }
+        TransportTimeouts attemptTimeouts = deadline == Long.MAX_VALUE
+                ? timeouts : timeouts.withTotalMillis(remainingMillis);
 
-        // Request is lazily fired whenever you need to obtain information about response.
-        int responseCode = 0;
-        String type = null;
-        StringBuilder message = new StringBuilder();
+        CompletableFuture<StandardResponse> sent = executeMultipart(baseUrl, token, body, gzip, attemptTimeouts,
+                caller);
+        return sent.thenCompose(response -> {
+            boolean retryable = retryPolicy.isRetryable(response.getCode());
+            if (retryable) {
+                circuitBreaker.recordFailure();
+            } else {
+                circuitBreaker.recordSuccess();
+            }
+            if (retry > 0) {
+                response.setMessage("[retried " + retry + " time(s)] " + response.getMessage());
+            }
+            long delayMillis = retryPolicy.getDelayMillis(retry, response.getRetryAfterMillis());
+            if (!retryable || retry >= retryPolicy.getMaxRetries()
+                    || delayMillis >= deadline - System.currentTimeMillis()) {
+                return CompletableFuture.completedFuture(response);
+            }
+            return TransportTimer.delay(delayMillis).thenCompose(
+                    delayed -> postMultipart(baseUrl, token, body, gzip, caller, deadline, retry + 1, response));
+        });
+    }
+
+    private CompletableFuture<StandardResponse> executeMultipart(String baseUrl, String token, MultipartReportBody body,
+                                                                 boolean gzip, TransportTimeouts timeouts,
+                                                                 CompletableFuture<?> caller) {
+        RequestTimings timings = new RequestTimings();
+        timings.requestStarted();
+        CompletableFuture<TransportResponse> sent;
         try {
-            responseCode = ((HttpURLConnection) connection).getResponseCode();
-            type = ((HttpURLConnection) connection).getResponseMessage();
-            message.append(String.format("%d: %s: ", responseCode, type));
-            if (((HttpURLConnection) connection).getErrorStream() != null) {
-                InputStreamReader inputStreamReader = new InputStreamReader((((HttpURLConnection) connection).getErrorStream()), StandardCharsets.UTF_8);
-                BufferedReader br = new BufferedReader(inputStreamReader);
-                String output;
-                while ((output = br.readLine()) != null) {
-                    message.append(output);
-                }
-                inputStreamReader.close();
-                br.close();
+            sent = transportFor(baseUrl, body, gzip).post(baseUrl, token, body, gzip, timeouts, timings);
+        } catch (IOException | RuntimeException e) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(e);
+        }
+        CompletableFuture<TransportResponse> request = sent;
+        caller.whenComplete((result, error) -> request.cancel(true));
+
+        return sent.handle((transportResponse, error) -> {
+            int responseCode = 0;
+            String type = null;
+            String message;
+            long retryAfterMillis = -1;
+            if (error == null) {
+                responseCode = transportResponse.getCode();
+                type = transportResponse.getReason();
+                retryAfterMillis = transportResponse.getRetryAfterMillis();
+                message = String.format("%d: %s: ", responseCode, type)
+                        + transportResponse.getBody().replaceAll("\\r?\\n", "");
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                LOGGER.log(Level.FINE, "Failed to send report to " + baseUrl, cause);
+                message = String.format("%d: %s: %s", responseCode, type, cause);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            timings.requestFinished();
+            StandardResponse response = new StandardResponse(responseCode, type, message);
+            response.setTimings(timings);
+            response.setRetryAfterMillis(retryAfterMillis);
+            return response;
+        });
+    }
+
+    private ReportTransport transportFor(String baseUrl, MultipartReportBody body, boolean gzip) throws IOException {
+        if (transport != null) {
+            return transport;
+        }
+        // Large local reports over plain HTTP skip the pooled client and its copies.
+        return NioTransport.isApplicable(baseUrl, body, gzip) ? NioTransport.INSTANCE : PooledClientTransport.INSTANCE;
+    }
+
+    static long parseRetryAfter(String retryAfter) {
+        String value = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
         }
-        return new StandardResponse(responseCode, type, message.toString());
     }
 
-}
\ No newline at end of file
+}
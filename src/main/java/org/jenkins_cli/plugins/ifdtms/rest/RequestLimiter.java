@@ -0,0 +1,140 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per iTMS server limit on the report requests of every build of the JVM: a token
+ * bucket caps the requests started per second and a counter the requests in flight.
+ * Callers wait in arrival order, so a build that started waiting first is served first.
+ * A permit covers a single request, a retry takes a new one.
+ */
+public class RequestLimiter {
+
+    private static final ConcurrentMap<String, RequestLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private static volatile int maxRequestsPerSecond;
+    private static volatile int maxInFlightRequests;
+
+    // Guarded by this.
+    private final Queue<Thread> waiting = new ArrayDeque<>();
+    private int inFlight;
+    private double tokens;
+    private long refilledAt = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+
+    private RequestLimiter() {
+    }
+
+    /**
+     * Sets the limits applied to every server, 0 for no limit. The limiters in use take
+     * them over at once, the requests in flight count against the new limits.
+     */
+    public static synchronized void configure(int maxRequestsPerSecond, int maxInFlightRequests) {
+        RequestLimiter.maxRequestsPerSecond = maxRequestsPerSecond;
+        RequestLimiter.maxInFlightRequests = maxInFlightRequests;
+        for (RequestLimiter limiter : LIMITERS.values()) {
+            limiter.limitsChanged();
+        }
+    }
+
+    /**
+     * @param itmsAddress any iTMS URL, requests to the same scheme, host and port share a limiter
+     */
+    public static RequestLimiter forServer(String itmsAddress) {
+        return LIMITERS.computeIfAbsent(ItmsEndpoints.serverOf(itmsAddress), server -> new RequestLimiter());
+    }
+
+    /**
+     * Waits until a request may be sent. The permit must be closed once the request is over,
+     * before waiting for a retry.
+     */
+    public Permit acquire() throws InterruptedException {
+        long start = System.nanoTime();
+        Thread current = Thread.currentThread();
+        synchronized (this) {
+            waiting.add(current);
+            try {
+                long waitNanos;
+                while ((waitNanos = waiting.peek() == current ? nanosUntilStart() : -1) != 0) {
+                    if (waitNanos < 0) {
+                        wait();
+                    } else {
+                        TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                    }
+                }
+            } catch (InterruptedException e) {
+                waiting.remove(current);
+                notifyAll();
+                throw e;
+            }
+            waiting.remove();
+            inFlight++;
+            if (maxRequestsPerSecond > 0) {
+                tokens--;
+            }
+            // The next caller may start as well.
+            notifyAll();
+        }
+        return new Permit(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * @return 0 if a request may start now, -1 while it waits for a request to finish,
+     * the time until the next token otherwise.
+     */
+    private long nanosUntilStart() {
+        int maxInFlight = maxInFlightRequests;
+        if (maxInFlight > 0 && inFlight >= maxInFlight) {
+            return -1;
+        }
+        int requestsPerSecond = maxRequestsPerSecond;
+        if (requestsPerSecond <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        // A full bucket lets a second worth of requests start at once.
+        tokens = Math.min(requestsPerSecond,
+                tokens + (double) (now - refilledAt) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+        return tokens >= 1 ? 0
+                : Math.max(1, (long) ((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / requestsPerSecond));
+    }
+
+    private synchronized void limitsChanged() {
+        notifyAll();
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public class Permit implements AutoCloseable {
+        private final long waitMillis;
+        private boolean closed;
+
+        private Permit(long waitMillis) {
+            this.waitMillis = waitMillis;
+        }
+
+        /**
+         * @return how long the caller waited for this permit.
+         */
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+
+        @Override
+        public void close() {
+            synchronized (RequestLimiter.this) {
+                if (!closed) {
+                    closed = true;
+                    inFlight--;
+                    RequestLimiter.this.notifyAll();
+                }
+            }
+        }
+    }
+}
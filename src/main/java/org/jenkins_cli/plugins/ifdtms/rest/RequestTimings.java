@@ -0,0 +1,140 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time of one report request went. All durations are in milliseconds:
+ * <ul>
+ *     <li>queue: waiting for a request slot on the iTMS server, before the request started</li>
+ *     <li>connect: from the start of the request until the body starts being written,
+ *     waiting for a pooled connection and opening it included</li>
+ *     <li>read: reading the report files while the body is written</li>
+ *     <li>send: writing the body, encoding, compression and reading included</li>
+ *     <li>wait: from the end of the body until the response headers arrived (time to first byte)</li>
+ *     <li>total: the whole request, reading the response included</li>
+ * </ul>
+ */
+public class RequestTimings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long queueMillis;
+    private long connectMillis;
+    private long readMillis;
+    private long sendMillis;
+    private long waitMillis;
+    private long totalMillis;
+    private long reportBytes;
+    private long bodyBytes;
+
+    private transient long startNanos;
+    private transient long sendStartNanos;
+    private transient long sendEndNanos;
+    private transient long readNanos;
+
+    public RequestTimings() {
+    }
+
+    public RequestTimings(long queueMillis, long connectMillis, long readMillis, long sendMillis, long waitMillis,
+                          long totalMillis, long reportBytes, long bodyBytes) {
+        this.queueMillis = queueMillis;
+        this.connectMillis = connectMillis;
+        this.readMillis = readMillis;
+        this.sendMillis = sendMillis;
+        this.waitMillis = waitMillis;
+        this.totalMillis = totalMillis;
+        this.reportBytes = reportBytes;
+        this.bodyBytes = bodyBytes;
+    }
+
+    void requestStarted() {
+        startNanos = System.nanoTime();
+    }
+
+    void sendStarted() {
+        sendStartNanos = System.nanoTime();
+        readNanos = 0;
+        reportBytes = 0;
+    }
+
+    void reportRead(long nanos, long bytes) {
+        readNanos += nanos;
+        reportBytes += bytes;
+    }
+
+    void sendFinished(long bodyBytes) {
+        sendEndNanos = System.nanoTime();
+        this.bodyBytes = bodyBytes;
+    }
+
+    void responseReceived() {
+        if (sendEndNanos > 0) {
+            waitMillis = millis(System.nanoTime() - sendEndNanos);
+        }
+    }
+
+    void requestFinished() {
+        long endNanos = System.nanoTime();
+        totalMillis = millis(endNanos - startNanos);
+        if (sendStartNanos > 0) {
+            connectMillis = millis(sendStartNanos - startNanos);
+            readMillis = millis(readNanos);
+            sendMillis = millis((sendEndNanos > 0 ? sendEndNanos : endNanos) - sendStartNanos);
+        } else {
+            // The body was never written, the time went into getting a connection.
+            connectMillis = totalMillis;
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    public long getQueueMillis() {
+        return queueMillis;
+    }
+
+    public void setQueueMillis(long queueMillis) {
+        this.queueMillis = queueMillis;
+    }
+
+    public long getConnectMillis() {
+        return connectMillis;
+    }
+
+    public long getReadMillis() {
+        return readMillis;
+    }
+
+    public long getSendMillis() {
+        return sendMillis;
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * @return bytes read from the report files.
+     */
+    public long getReportBytes() {
+        return reportBytes;
+    }
+
+    /**
+     * @return bytes of the multipart body, before compression.
+     */
+    public long getBodyBytes() {
+        return bodyBytes;
+    }
+
+    public String toString() {
+        return String.format("queue %d ms, connect %d ms, read %d ms, send %d ms, wait %d ms, total %d ms, %d bytes",
+                queueMillis, connectMillis, readMillis, sendMillis, waitMillis, totalMillis, bodyBytes);
+    }
+}
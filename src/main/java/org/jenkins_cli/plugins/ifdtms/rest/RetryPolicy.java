@@ -0,0 +1,62 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff with jitter for report uploads that failed in a way that
+ * may succeed later: I/O errors, 429 and 5xx responses.
+ */
+public class RetryPolicy {
+
+    private static final String PREFIX = RetryPolicy.class.getName();
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(
+            Integer.getInteger(PREFIX + ".maxRetries", 3),
+            Long.getLong(PREFIX + ".initialDelayMillis", TimeUnit.SECONDS.toMillis(1)),
+            Long.getLong(PREFIX + ".maxDelayMillis", TimeUnit.MINUTES.toMillis(1)));
+
+    /**
+     * A single attempt, for callers retrying on their own.
+     */
+    public static final RetryPolicy NO_RETRY = new RetryPolicy(0, 1, 1);
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final int maxRetries;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxRetries, long initialDelayMillis, long maxDelayMillis) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.initialDelayMillis = Math.max(1, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param responseCode the HTTP status, 0 when the request failed with an I/O error.
+     */
+    public boolean isRetryable(int responseCode) {
+        return responseCode == 0 || responseCode == HTTP_TOO_MANY_REQUESTS || responseCode >= 500;
+    }
+
+    /**
+     * @param retry            zero based index of the retry about to be made.
+     * @param retryAfterMillis delay asked for by the server through Retry-After, or -1.
+     */
+    public long getDelayMillis(int retry, long retryAfterMillis) {
+        if (retryAfterMillis >= 0) {
+            return Math.min(retryAfterMillis, maxDelayMillis);
+        }
+        long backoff = initialDelayMillis << Math.min(retry, 30);
+        if (backoff <= 0 || backoff > maxDelayMillis) {
+            backoff = maxDelayMillis;
+        }
+        // Equal jitter: keep half of the backoff, randomize the other half to spread out retrying builds.
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+}
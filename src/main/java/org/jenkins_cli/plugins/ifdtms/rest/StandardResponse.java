@@ -1,10 +1,16 @@
 package org.jenkins_cli.plugins.ifdtms.rest;
 
-public class StandardResponse {
+import java.io.Serializable;
+
+public class StandardResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private int code;
     private String type;
     private String message;
+    private RequestTimings timings;
+    private long retryAfterMillis = -1;
 
     public StandardResponse() {
 
@@ -40,6 +46,32 @@ public class StandardResponse {
         this.message = message;
     }
 
+    /**
+     * @return the timings of the report request that produced this response, null for other requests.
+     */
+    public RequestTimings getTimings() {
+        return timings;
+    }
+
+    public void setTimings(RequestTimings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * @return the delay asked for by a Retry-After header of the response, -1 without one.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public void setRetryAfterMillis(long retryAfterMillis) {
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public boolean isSuccessful() {
+        return code >= 200 && code < 300;
+    }
+
     public String toString() {
         return "Standard response: " + this.code + " - " + this.message;
     }
@@ -0,0 +1,39 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+/**
+ * Status of the response to a report request, as returned by a {@link ReportTransport}.
+ */
+public class TransportResponse {
+
+    private final int code;
+    private final String reason;
+    private final String body;
+    private final long retryAfterMillis;
+
+    /**
+     * @param body             start of the body of an error response, empty for other responses
+     * @param retryAfterMillis delay asked for by a Retry-After header, -1 without one
+     */
+    public TransportResponse(int code, String reason, String body, long retryAfterMillis) {
+        this.code = code;
+        this.reason = reason;
+        this.body = body != null ? body : "";
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
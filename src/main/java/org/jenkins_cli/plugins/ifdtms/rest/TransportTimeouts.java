@@ -0,0 +1,58 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Time budgets of one report request, 0 for no limit. Serializable so that uploads
+ * sent from an agent keep the budgets set on the controller.
+ */
+public class TransportTimeouts implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final TransportTimeouts DEFAULT = new TransportTimeouts(
+            TimeUnit.SECONDS.toMillis(DEFAULT_CONNECT_TIMEOUT_SECONDS),
+            TimeUnit.SECONDS.toMillis(DEFAULT_READ_TIMEOUT_SECONDS),
+            TimeUnit.SECONDS.toMillis(DEFAULT_REQUEST_TIMEOUT_SECONDS));
+
+    private final long connectMillis;
+    private final long readMillis;
+    private final long totalMillis;
+
+    /**
+     * @param connectMillis longest wait for the connection to the server
+     * @param readMillis    longest time without any progress while sending the body or reading the response
+     * @param totalMillis   longest time for the whole request, from connecting to the end of the response
+     */
+    public TransportTimeouts(long connectMillis, long readMillis, long totalMillis) {
+        this.connectMillis = Math.max(0, connectMillis);
+        this.readMillis = Math.max(0, readMillis);
+        this.totalMillis = Math.max(0, totalMillis);
+    }
+
+    public long getConnectMillis() {
+        return connectMillis;
+    }
+
+    public long getReadMillis() {
+        return readMillis;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * @return the same budgets with what is left of the total one, for a retry.
+     */
+    public TransportTimeouts withTotalMillis(long totalMillis) {
+        return new TransportTimeouts(connectMillis, readMillis, totalMillis);
+    }
+
+    public String toString() {
+        return String.format("connect %d ms, read %d ms, total %d ms", connectMillis, readMillis, totalMillis);
+    }
+}
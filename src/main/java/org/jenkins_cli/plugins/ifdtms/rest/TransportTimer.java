@@ -0,0 +1,36 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single thread firing the deadlines of the requests and the delays between retries,
+ * so that no upload thread sleeps while waiting for them. Tasks must not block.
+ */
+final class TransportTimer {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "iTMS transport timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TransportTimer() {
+    }
+
+    static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return TIMER.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return a future completing after the delay.
+     */
+    static CompletableFuture<Void> delay(long delayMillis) {
+        CompletableFuture<Void> delay = new CompletableFuture<>();
+        schedule(() -> delay.complete(null), Math.max(0, delayMillis));
+        return delay;
+    }
+}
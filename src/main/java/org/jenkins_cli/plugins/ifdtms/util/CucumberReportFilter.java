@@ -0,0 +1,240 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import hudson.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Streaming (token level) rewrite of a Cucumber JSON report that drops, caps or
+ * externalizes the base64 {@code embeddings} of the steps and hooks. Everything
+ * else is copied token by token, so memory use does not depend on the size of
+ * the report; in cap mode at most one capped embedding is held at a time.
+ */
+public class CucumberReportFilter {
+
+    private static final String EMBEDDINGS = "embeddings";
+    private static final String MIME_TYPE = "mime_type";
+    private static final String NAME = "name";
+    private static final String DATA = "data";
+    private static final String LINK_MIME_TYPE = "text/uri-list";
+    private static final String NOTE_MIME_TYPE = "text/plain";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String embeddingsMode;
+    private final long maxEmbeddingBytes;
+
+    public CucumberReportFilter(String embeddingsMode, long maxEmbeddingBytes) {
+        this.embeddingsMode = embeddingsMode;
+        this.maxEmbeddingBytes = Math.max(0, maxEmbeddingBytes);
+    }
+
+    /**
+     * @param embeddingsFolder where embeddings are written in link mode
+     * @param embeddingsUrl    URL under which the content of {@code embeddingsFolder} will be served
+     * @return the number of embeddings that were written to {@code embeddingsFolder}
+     */
+    public int filter(InputStream in, OutputStream out, File embeddingsFolder, String embeddingsUrl)
+            throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            Pass pass = new Pass(parser, generator, embeddingsFolder, embeddingsUrl);
+            pass.run();
+            return pass.externalized;
+        } catch (IllegalArgumentException e) {
+            // Jackson reports invalid base64 this way.
+            throw new IOException("Failed to process the Cucumber report: " + e.getMessage(), e);
+        }
+    }
+
+    private static String extension(String mimeType) {
+        if (mimeType == null) {
+            return "bin";
+        }
+        switch (mimeType) {
+            case "image/png":
+                return "png";
+            case "image/jpeg":
+                return "jpg";
+            case "image/gif":
+                return "gif";
+            case "image/svg+xml":
+                return "svg";
+            case "video/mp4":
+                return "mp4";
+            case "video/webm":
+                return "webm";
+            case "text/plain":
+                return "txt";
+            case "text/html":
+                return "html";
+            case "application/json":
+                return "json";
+            default:
+                return "bin";
+        }
+    }
+
+    /**
+     * State of one filtering run.
+     */
+    private class Pass {
+
+        private final JsonParser parser;
+        private final JsonGenerator generator;
+        private final File embeddingsFolder;
+        private final String embeddingsUrl;
+
+        private int externalized;
+
+        private Pass(JsonParser parser, JsonGenerator generator, File embeddingsFolder, String embeddingsUrl) {
+            this.parser = parser;
+            this.generator = generator;
+            this.embeddingsFolder = embeddingsFolder;
+            this.embeddingsUrl = embeddingsUrl;
+        }
+
+        private void run() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME && EMBEDDINGS.equals(parser.getCurrentName())) {
+                    embeddings();
+                } else {
+                    generator.copyCurrentEvent(parser);
+                }
+            }
+            generator.flush();
+        }
+
+        private void embeddings() throws IOException {
+            if (EMBEDDINGS_KEEP.equals(embeddingsMode)) {
+                generator.copyCurrentStructure(parser);
+                return;
+            }
+            if (parser.nextToken() != JsonToken.START_ARRAY || EMBEDDINGS_DROP.equals(embeddingsMode)) {
+                // The field is left out, Cucumber reports do not require it.
+                parser.skipChildren();
+                return;
+            }
+            generator.writeFieldName(EMBEDDINGS);
+            generator.writeStartArray();
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_OBJECT) {
+                    embedding();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            generator.writeEndArray();
+        }
+
+        private void embedding() throws IOException {
+            String mimeType = null;
+            String name = null;
+            byte[] data = null;
+            long dataBytes = 0;
+            File linked = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (MIME_TYPE.equals(field)) {
+                    mimeType = parser.getValueAsString();
+                } else if (NAME.equals(field)) {
+                    name = parser.getValueAsString();
+                } else if (DATA.equals(field) && parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                    if (EMBEDDINGS_LINK.equals(embeddingsMode)) {
+                        linked = new File(embeddingsFolder, "embedding-" + (externalized + 1));
+                        Files.createDirectories(embeddingsFolder.toPath());
+                        try (OutputStream out = Files.newOutputStream(linked.toPath())) {
+                            dataBytes = parser.readBinaryValue(Base64Variants.MIME_NO_LINEFEEDS, out);
+                        }
+                    } else {
+                        CappedBuffer buffer = new CappedBuffer(maxEmbeddingBytes);
+                        dataBytes = parser.readBinaryValue(Base64Variants.MIME_NO_LINEFEEDS, buffer);
+                        data = buffer.isOverflowed() ? null : buffer.toByteArray();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            generator.writeStartObject();
+            if (name != null) {
+                generator.writeStringField(NAME, name);
+            }
+            if (linked != null) {
+                // The mime type is only known once the whole object was read, so the extension is added last.
+                String fileName = linked.getName() + "." + extension(mimeType);
+                Files.move(linked.toPath(), new File(embeddingsFolder, fileName).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                externalized++;
+                generator.writeStringField(MIME_TYPE, LINK_MIME_TYPE);
+                writeText(embeddingsUrl + Util.rawEncode(fileName));
+            } else if (data != null) {
+                if (mimeType != null) {
+                    generator.writeStringField(MIME_TYPE, mimeType);
+                }
+                generator.writeFieldName(DATA);
+                generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, data, 0, data.length);
+            } else {
+                generator.writeStringField(MIME_TYPE, NOTE_MIME_TYPE);
+                writeText("[" + (mimeType != null ? mimeType : "embedding") + " of " + dataBytes
+                        + " bytes removed]");
+            }
+            generator.writeEndObject();
+        }
+
+        private void writeText(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            generator.writeFieldName(DATA);
+            generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Keeps decoded bytes up to a limit and only counts them beyond it.
+     */
+    private static class CappedBuffer extends ByteArrayOutputStream {
+
+        private final long limit;
+        private boolean overflowed;
+
+        private CappedBuffer(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (overflowed || count + len > limit) {
+                overflowed = true;
+                reset();
+                return;
+            }
+            super.write(b, off, len);
+        }
+
+        private boolean isOverflowed() {
+            return overflowed;
+        }
+    }
+}
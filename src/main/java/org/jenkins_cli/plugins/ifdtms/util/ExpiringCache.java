@@ -0,0 +1,107 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Bounded cache whose values expire a fixed time after they were loaded. Concurrent
+ * lookups of a missing key share a single load: the first caller runs it, the
+ * others wait for its result. A load that throws is not cached.
+ */
+public class ExpiringCache<V> {
+
+    private final long ttlMillis;
+    private final Map<String, Entry<V>> entries;
+
+    public ExpiringCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public V get(String key, Callable<V> loader) throws ExecutionException, InterruptedException {
+        Entry<V> entry;
+        boolean owner = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null || entry.isExpired(ttlMillis)) {
+                entry = new Entry<>(loader);
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+        if (owner) {
+            entry.load.run();
+            entry.loadedAt = System.currentTimeMillis();
+        }
+        try {
+            return entry.load.get();
+        } catch (ExecutionException e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the loaded value of the key, null if it is missing, expired or still loading.
+     */
+    public V getIfPresent(String key) {
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired(ttlMillis)) {
+                entries.remove(key);
+                return null;
+            }
+        }
+        if (entry == null || entry.loadedAt == 0) {
+            return null;
+        }
+        try {
+            return entry.load.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    public void put(String key, V value) {
+        Entry<V> entry = new Entry<>(() -> value);
+        entry.load.run();
+        entry.loadedAt = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static class Entry<V> {
+        private final FutureTask<V> load;
+        // 0 while loading, a loading entry never expires.
+        private volatile long loadedAt;
+
+        private Entry(Callable<V> loader) {
+            this.load = new FutureTask<>(loader);
+        }
+
+        private boolean isExpired(long ttlMillis) {
+            return loadedAt > 0 && System.currentTimeMillis() - loadedAt > ttlMillis;
+        }
+    }
+}
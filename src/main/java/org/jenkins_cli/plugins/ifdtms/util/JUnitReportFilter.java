@@ -0,0 +1,192 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Streaming (StAX) rewrite of a JUnit XML report. It can strip or truncate the
+ * {@code system-out}/{@code system-err} blocks and, in failures-only mode, drop the
+ * test cases that passed while keeping the suite elements and their counts.
+ * Memory use does not depend on the size of the report.
+ */
+public class JUnitReportFilter {
+
+    private static final String TEST_CASE = "testcase";
+    private static final String SYSTEM_OUT = "system-out";
+    private static final String SYSTEM_ERR = "system-err";
+    private static final String FAILURE = "failure";
+    private static final String ERROR = "error";
+
+    private final String outputMode;
+    private final int maxOutputChars;
+    private final boolean failuresOnly;
+
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    public JUnitReportFilter(String outputMode, int maxOutputChars, boolean failuresOnly) {
+        this.outputMode = outputMode;
+        this.maxOutputChars = Math.max(0, maxOutputChars);
+        this.failuresOnly = failuresOnly;
+    }
+
+    public void filter(InputStream in, OutputStream out) throws IOException {
+        try {
+            XMLEventReader reader = newInputFactory().createXMLEventReader(in);
+            XMLEventWriter writer = XMLOutputFactory.newInstance()
+                    .createXMLEventWriter(out, StandardCharsets.UTF_8.name());
+            try {
+                new Pass(reader, writer).run();
+                writer.flush();
+            } finally {
+                writer.close();
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to process the JUnit report: " + e.getMessage(), e);
+        }
+    }
+
+    static XMLInputFactory newInputFactory() {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        // Reports come from the workspace, never resolve DTDs or external entities.
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return inputFactory;
+    }
+
+    private static boolean isOutput(String name) {
+        return SYSTEM_OUT.equals(name) || SYSTEM_ERR.equals(name);
+    }
+
+    /**
+     * State of one filtering run.
+     */
+    private class Pass {
+
+        private final XMLEventReader reader;
+        private final XMLEventWriter writer;
+
+        // Events of the current test case while it is not known yet whether it failed.
+        private List<XMLEvent> testCase;
+        private boolean keepTestCase;
+
+        private int skipDepth;
+        private boolean inOutput;
+        private long outputLimit;
+        private long outputChars;
+        private long truncatedChars;
+
+        private Pass(XMLEventReader reader, XMLEventWriter writer) {
+            this.reader = reader;
+            this.writer = writer;
+        }
+
+        private void run() throws XMLStreamException {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (skipDepth > 0) {
+                    skip(event);
+                } else if (event.isStartDocument()) {
+                    // The output is always written as UTF-8, whatever the input declared.
+                    writer.add(eventFactory.createStartDocument(StandardCharsets.UTF_8.name(), "1.0"));
+                } else if (event.isStartElement()) {
+                    startElement(event);
+                } else if (event.isEndElement()) {
+                    endElement(event);
+                } else if (event.isCharacters() && inOutput) {
+                    output(event.asCharacters());
+                } else {
+                    emit(event);
+                }
+            }
+        }
+
+        private void startElement(XMLEvent event) throws XMLStreamException {
+            String name = event.asStartElement().getName().getLocalPart();
+            if (isOutput(name)) {
+                if (OUTPUT_STRIP.equals(outputMode)) {
+                    skipDepth = 1;
+                    return;
+                }
+                inOutput = true;
+                outputChars = 0;
+                truncatedChars = 0;
+                // While a test case is buffered its output is capped as well, to keep memory bounded.
+                boolean buffering = testCase != null && !keepTestCase;
+                outputLimit = OUTPUT_TRUNCATE.equals(outputMode) || buffering ? maxOutputChars : Long.MAX_VALUE;
+            } else if (failuresOnly && TEST_CASE.equals(name)) {
+                testCase = new ArrayList<>();
+                keepTestCase = false;
+            } else if (testCase != null && !keepTestCase && (FAILURE.equals(name) || ERROR.equals(name))) {
+                keepTestCase = true;
+                for (XMLEvent buffered : testCase) {
+                    writer.add(buffered);
+                }
+                testCase.clear();
+            }
+            emit(event);
+        }
+
+        private void endElement(XMLEvent event) throws XMLStreamException {
+            String name = event.asEndElement().getName().getLocalPart();
+            if (inOutput && isOutput(name)) {
+                if (truncatedChars > 0) {
+                    emit(eventFactory.createCharacters("\n[" + truncatedChars + " more characters truncated]"));
+                }
+                inOutput = false;
+            }
+            emit(event);
+            if (testCase != null && TEST_CASE.equals(name)) {
+                // A passing test case is dropped with everything that was buffered for it.
+                testCase = null;
+                keepTestCase = false;
+            }
+        }
+
+        private void output(Characters characters) throws XMLStreamException {
+            String data = characters.getData();
+            long room = outputLimit - outputChars;
+            if (room >= data.length()) {
+                outputChars += data.length();
+                emit(characters);
+            } else {
+                if (room > 0) {
+                    String kept = data.substring(0, (int) room);
+                    emit(characters.isCData() ? eventFactory.createCData(kept) : eventFactory.createCharacters(kept));
+                    outputChars += room;
+                }
+                truncatedChars += data.length() - Math.max(room, 0);
+            }
+        }
+
+        private void skip(XMLEvent event) {
+            if (event.isStartElement()) {
+                skipDepth++;
+            } else if (event.isEndElement()) {
+                skipDepth--;
+            }
+        }
+
+        private void emit(XMLEvent event) throws XMLStreamException {
+            if (testCase != null && !keepTestCase) {
+                testCase.add(event);
+            } else {
+                writer.add(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits a report on its own boundaries, {@code <testsuite>} elements of a JUnit
+ * {@code <testsuites>} report, {@code <testcase>} elements of a single {@code <testsuite>}
+ * or features of a Cucumber JSON report, into parts that stay under a byte limit. Each
+ * element is streamed to a scratch file first, so its size is known before it is appended
+ * to a part; a single element larger than the limit gets a part of its own. The root of a
+ * JUnit part carries the namespaces of the report and the counts of the test cases in it.
+ */
+public class ReportSplitter {
+
+    private static final String TEST_SUITES = "testsuites";
+    private static final String TEST_SUITE = "testsuite";
+    private static final String TEST_CASE = "testcase";
+    private static final byte[] XML_DECLARATION =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>".getBytes(StandardCharsets.UTF_8);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final long maxPartBytes;
+
+    public ReportSplitter(long maxPartBytes) {
+        this.maxPartBytes = maxPartBytes;
+    }
+
+    /**
+     * Writes the parts next to {@code target}, named after it ({@code name.part-N.ext}).
+     *
+     * @return the parts in order, or an empty list when the report cannot be split
+     */
+    public List<File> split(File report, File target, boolean isJsonReport) throws IOException {
+        File folder = target.getParentFile();
+        File element = File.createTempFile("element", ".tmp", folder);
+        Parts parts = new Parts(target);
+        try (InputStream in = Files.newInputStream(report.toPath())) {
+            boolean split = isJsonReport ? splitCucumber(in, element, parts) : splitJUnit(in, element, parts);
+            List<File> files = parts.finish();
+            if (!split || files.size() < 2) {
+                for (File file : files) {
+                    Files.delete(file.toPath());
+                }
+                return Collections.emptyList();
+            }
+            return files;
+        } catch (IOException | RuntimeException e) {
+            parts.abort();
+            throw e;
+        } finally {
+            Files.deleteIfExists(element.toPath());
+        }
+    }
+
+    private boolean splitJUnit(InputStream in, File element, Parts parts) throws IOException {
+        XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+        try {
+            XMLEventReader reader = JUnitReportFilter.newInputFactory().createXMLEventReader(in);
+            try {
+                StartElement root = null;
+                while (reader.hasNext() && root == null) {
+                    XMLEvent event = reader.nextEvent();
+                    if (event.isStartElement()) {
+                        root = event.asStartElement();
+                    }
+                }
+                String rootName = root != null ? root.getName().getLocalPart() : null;
+                if (!TEST_SUITES.equals(rootName) && !TEST_SUITE.equals(rootName)) {
+                    return false;
+                }
+                StartElement partRoot = root;
+                parts.setEnvelope(counts -> xmlHeader(outputFactory, withCounts(partRoot, counts)),
+                        new byte[0], xmlFooter(root));
+
+                while (reader.hasNext()) {
+                    XMLEvent event = reader.nextEvent();
+                    if (!event.isStartElement()) {
+                        // Whitespace and comments between the elements, and the closing root element.
+                        continue;
+                    }
+                    Counts counts = new Counts();
+                    try (OutputStream out = Files.newOutputStream(element.toPath())) {
+                        XMLEventWriter writer = outputFactory.createXMLEventWriter(out, StandardCharsets.UTF_8.name());
+                        // Local names of the open elements, to tell the results of a test case.
+                        Deque<String> open = new ArrayDeque<>();
+                        while (true) {
+                            writer.add(event);
+                            if (event.isStartElement()) {
+                                String name = event.asStartElement().getName().getLocalPart();
+                                counts.started(name, open.peek());
+                                open.push(name);
+                            } else if (event.isEndElement()) {
+                                open.pop();
+                            }
+                            if (open.isEmpty()) {
+                                break;
+                            }
+                            event = reader.nextEvent();
+                        }
+                        writer.flush();
+                        writer.close();
+                    }
+                    parts.add(element, counts);
+                }
+                return true;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to split the JUnit report: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the root with the counts of a part instead of those of the whole report, other attributes
+     * and namespace declarations kept.
+     */
+    private static StartElement withCounts(StartElement root, Counts counts) {
+        XMLEventFactory events = XMLEventFactory.newInstance();
+        List<Attribute> attributes = new ArrayList<>();
+        Set<String> counted = new HashSet<>();
+        for (Iterator<?> it = root.getAttributes(); it.hasNext(); ) {
+            Attribute attribute = (Attribute) it.next();
+            String name = attribute.getName().getLocalPart();
+            String count = attribute.getName().getNamespaceURI().isEmpty() ? counts.get(name) : null;
+            if (count != null) {
+                attributes.add(events.createAttribute(name, count));
+                counted.add(name);
+            } else {
+                attributes.add(attribute);
+            }
+        }
+        for (String name : Counts.REQUIRED) {
+            if (!counted.contains(name)) {
+                attributes.add(events.createAttribute(name, counts.get(name)));
+            }
+        }
+        return events.createStartElement(root.getName(), attributes.iterator(), root.getNamespaces());
+    }
+
+    private static byte[] xmlHeader(XMLOutputFactory outputFactory, StartElement root) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(XML_DECLARATION, 0, XML_DECLARATION.length);
+        try {
+            XMLEventWriter writer = outputFactory.createXMLEventWriter(header, StandardCharsets.UTF_8.name());
+            writer.add(root);
+            // Closes the start tag without writing anything else.
+            writer.add(XMLEventFactory.newInstance().createCharacters(""));
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write the root of a JUnit part: " + e.getMessage(), e);
+        }
+        return header.toByteArray();
+    }
+
+    private static byte[] xmlFooter(StartElement root) {
+        QName name = root.getName();
+        String qualifiedName = name.getPrefix().isEmpty() ? name.getLocalPart()
+                : name.getPrefix() + ":" + name.getLocalPart();
+        return ("</" + qualifiedName + ">").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean splitCucumber(InputStream in, File element, Parts parts) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return false;
+            }
+            byte[] header = bytes("[");
+            parts.setEnvelope(counts -> header, bytes(","), bytes("]"));
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                try (OutputStream out = Files.newOutputStream(element.toPath());
+                     JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+                    generator.copyCurrentStructure(parser);
+                }
+                parts.add(element, new Counts());
+            }
+            return true;
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test cases of an element of a JUnit report, and their results.
+     */
+    private static class Counts {
+
+        private static final String[] REQUIRED = {"tests", "failures", "errors"};
+
+        private int tests;
+        private int failures;
+        private int errors;
+        private int skipped;
+
+        private void started(String name, String parent) {
+            if (TEST_CASE.equals(name)) {
+                tests++;
+            } else if (TEST_CASE.equals(parent)) {
+                switch (name) {
+                    case "failure":
+                        failures++;
+                        break;
+                    case "error":
+                        errors++;
+                        break;
+                    case "skipped":
+                        skipped++;
+                        break;
+                    default:
+                }
+            }
+        }
+
+        private Counts plus(Counts other) {
+            Counts sum = new Counts();
+            sum.tests = tests + other.tests;
+            sum.failures = failures + other.failures;
+            sum.errors = errors + other.errors;
+            sum.skipped = skipped + other.skipped;
+            return sum;
+        }
+
+        /**
+         * @return the value of a count attribute of a root, null for other attributes.
+         */
+        private String get(String attribute) {
+            switch (attribute) {
+                case "tests":
+                    return Integer.toString(tests);
+                case "failures":
+                    return Integer.toString(failures);
+                case "errors":
+                    return Integer.toString(errors);
+                case "skipped":
+                    return Integer.toString(skipped);
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Writes the header of a part once its content is known.
+     */
+    private interface Header {
+        byte[] forPart(Counts counts) throws IOException;
+    }
+
+    /**
+     * Parts being written, each one made of a header, elements joined by a separator and a footer.
+     * The elements of a part are gathered in a scratch file, the header is written when the part is closed.
+     */
+    private class Parts {
+
+        private final File folder;
+        private final String baseName;
+        private final String extension;
+        private final List<File> files = new ArrayList<>();
+
+        private Header header;
+        private byte[] separator;
+        private byte[] footer;
+
+        private File body;
+        private OutputStream current;
+        private long currentBytes;
+        private Counts currentCounts;
+
+        private Parts(File target) {
+            this.folder = target.getParentFile();
+            String name = target.getName();
+            int dot = name.lastIndexOf('.');
+            this.baseName = dot > 0 ? name.substring(0, dot) : name;
+            this.extension = dot > 0 ? name.substring(dot) : "";
+        }
+
+        private void setEnvelope(Header header, byte[] separator, byte[] footer) {
+            this.header = header;
+            this.separator = separator;
+            this.footer = footer;
+        }
+
+        private void add(File element, Counts counts) throws IOException {
+            long length = element.length();
+            if (current != null && header.forPart(currentCounts.plus(counts)).length + currentBytes
+                    + separator.length + length + footer.length > maxPartBytes) {
+                closePart();
+            }
+            if (current == null) {
+                files.add(new File(folder, baseName + ".part-" + (files.size() + 1) + extension));
+                body = File.createTempFile("part", ".tmp", folder);
+                current = Files.newOutputStream(body.toPath());
+                currentBytes = 0;
+                currentCounts = new Counts();
+            } else {
+                current.write(separator);
+                currentBytes += separator.length;
+            }
+            currentBytes += Files.copy(element.toPath(), current);
+            currentCounts = currentCounts.plus(counts);
+        }
+
+        private void closePart() throws IOException {
+            current.close();
+            current = null;
+            try (OutputStream out = Files.newOutputStream(files.get(files.size() - 1).toPath())) {
+                out.write(header.forPart(currentCounts));
+                Files.copy(body.toPath(), out);
+                out.write(footer);
+            }
+            Files.delete(body.toPath());
+            body = null;
+        }
+
+        private List<File> finish() throws IOException {
+            if (current != null) {
+                closePart();
+            }
+            return files;
+        }
+
+        private void abort() throws IOException {
+            if (current != null) {
+                current.close();
+            }
+            if (body != null) {
+                Files.deleteIfExists(body.toPath());
+            }
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+}
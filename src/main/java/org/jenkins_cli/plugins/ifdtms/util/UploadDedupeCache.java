@@ -0,0 +1,93 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded, persisted record of the reports iTMS already accepted, so that
+ * byte-identical reports are not uploaded again to the same cycle.
+ * Keys are digests of (server, project key, ticket key, cycle name, report hash);
+ * the least recently used keys are dropped first.
+ */
+public class UploadDedupeCache {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadDedupeCache.class.getName());
+    private static final int MAX_ENTRIES = Integer.getInteger(UploadDedupeCache.class.getName() + ".maxEntries", 50000);
+
+    private static UploadDedupeCache instance;
+
+    // Persisted form, least recently used first.
+    private List<String> keys = new ArrayList<>();
+
+    private transient Map<String, Boolean> entries;
+    private transient boolean dirty;
+
+    public static synchronized UploadDedupeCache get() {
+        if (instance == null) {
+            instance = load();
+        }
+        return instance;
+    }
+
+    private static UploadDedupeCache load() {
+        XmlFile file = getConfigFile();
+        UploadDedupeCache cache = null;
+        if (file.exists()) {
+            try {
+                cache = (UploadDedupeCache) file.read();
+            } catch (IOException | ClassCastException e) {
+                LOGGER.log(Level.WARNING, "Failed to load the iTMS upload dedupe cache, starting empty", e);
+            }
+        }
+        if (cache == null) {
+            cache = new UploadDedupeCache();
+        }
+        cache.entries = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+        if (cache.keys != null) {
+            for (String key : cache.keys) {
+                cache.entries.put(key, Boolean.TRUE);
+            }
+        }
+        return cache;
+    }
+
+    private static XmlFile getConfigFile() {
+        return new XmlFile(new File(Jenkins.get().getRootDir(), UploadDedupeCache.class.getName() + ".xml"));
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.get(key) != null;
+    }
+
+    public synchronized void put(String key) {
+        entries.put(key, Boolean.TRUE);
+        dirty = true;
+    }
+
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        keys = new ArrayList<>(entries.keySet());
+        try {
+            getConfigFile().write(this);
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the iTMS upload dedupe cache", e);
+        }
+    }
+}
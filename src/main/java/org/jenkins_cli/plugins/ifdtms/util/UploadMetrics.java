@@ -0,0 +1,38 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import com.codahale.metrics.MetricRegistry;
+import jenkins.metrics.api.Metrics;
+import org.jenkins_cli.plugins.ifdtms.model.UploadRecord;
+import org.jenkins_cli.plugins.ifdtms.rest.RequestTimings;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller-wide iTMS upload metrics, published through the Metrics plugin registry.
+ */
+public final class UploadMetrics {
+
+    private static final String PREFIX = "itms.upload.";
+
+    private UploadMetrics() {
+    }
+
+    public static void recordDiscovery(long millis, int reports) {
+        MetricRegistry registry = Metrics.metricRegistry();
+        registry.timer(PREFIX + "discovery").update(millis, TimeUnit.MILLISECONDS);
+        registry.histogram(PREFIX + "discovery.reports").update(reports);
+    }
+
+    public static void recordRequest(UploadRecord record) {
+        MetricRegistry registry = Metrics.metricRegistry();
+        RequestTimings timings = record.getTimings();
+        registry.timer(PREFIX + "requests").update(timings.getTotalMillis(), TimeUnit.MILLISECONDS);
+        registry.timer(PREFIX + "connect").update(timings.getConnectMillis(), TimeUnit.MILLISECONDS);
+        registry.timer(PREFIX + "read").update(timings.getReadMillis(), TimeUnit.MILLISECONDS);
+        registry.timer(PREFIX + "send").update(timings.getSendMillis(), TimeUnit.MILLISECONDS);
+        registry.timer(PREFIX + "wait").update(timings.getWaitMillis(), TimeUnit.MILLISECONDS);
+        registry.histogram(PREFIX + "request.bytes").update(timings.getBodyBytes());
+        registry.meter(PREFIX + "bytes").mark(timings.getBodyBytes());
+        registry.counter(PREFIX + (record.isSuccessful() ? "succeeded" : "failed")).inc(record.getReportCount());
+    }
+}
@@ -1,5 +1,6 @@
 package org.jenkins_cli.plugins.ifdtms.util;
 
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 
@@ -7,10 +8,19 @@ import java.net.URLConnection;
 public class UrlValidator {
 
     public static boolean isValidUrl(String string) {
+        return isValidUrl(string, 0);
+    }
+
+    /**
+     * @param timeoutMillis connect and read timeout, 0 to wait as long as it takes
+     */
+    public static boolean isValidUrl(String string, int timeoutMillis) {
 
         try {
 			URL url = new URL(string);
 			URLConnection conn = url.openConnection();
+            conn.setConnectTimeout(timeoutMillis);
+            conn.setReadTimeout(timeoutMillis);
             conn.connect();
 
         } catch (Exception e) {
@@ -19,4 +29,13 @@ public class UrlValidator {
         return true;
     }
 
+    public static boolean isWellFormed(String string) {
+        try {
+            new URL(string);
+        } catch (MalformedURLException e) {
+            return false;
+        }
+        return true;
+    }
+
 }
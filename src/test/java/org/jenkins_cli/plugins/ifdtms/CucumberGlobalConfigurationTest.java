@@ -0,0 +1,140 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.util.FormValidation;
+import hudson.util.Secret;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks which job configuration checks against a {@link FakeItmsServer} are answered from the cache.
+ */
+public class CucumberGlobalConfigurationTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private FakeItmsServer itms;
+    private CucumberGlobalConfiguration configuration;
+
+    @Before
+    public void setUp() throws IOException {
+        itms = new FakeItmsServer();
+        configuration = j.jenkins.getDescriptorByType(CucumberGlobalConfiguration.class);
+        configuration.getAuthenticationInfo().setUsername(Secret.fromString("validation-test"));
+        configuration.getAuthenticationInfo().setToken(Secret.fromString("validation-test-token"));
+    }
+
+    @After
+    public void tearDown() {
+        itms.close();
+    }
+
+    @Test
+    public void validConfigurationIsCached() {
+        String cycle = newCycle();
+
+        assertEquals(FormValidation.Kind.OK, check(cycle).kind);
+        assertEquals(FormValidation.Kind.OK, check(cycle).kind);
+
+        assertEquals(1, itms.getValidations());
+    }
+
+    @Test
+    public void clientErrorIsCached() {
+        itms.withValidationStatus(404);
+        String cycle = newCycle();
+
+        assertEquals(FormValidation.Kind.ERROR, check(cycle).kind);
+        assertEquals(FormValidation.Kind.ERROR, check(cycle).kind);
+
+        assertEquals(1, itms.getValidations());
+    }
+
+    @Test
+    public void serverErrorIsNotCached() {
+        itms.withValidationStatus(503);
+        String cycle = newCycle();
+
+        assertEquals(FormValidation.Kind.ERROR, check(cycle).kind);
+        assertEquals(FormValidation.Kind.ERROR, check(cycle).kind);
+        assertEquals(2, itms.getValidations());
+
+        itms.withValidationStatus(200);
+        assertEquals(FormValidation.Kind.OK, check(cycle).kind);
+        assertEquals(3, itms.getValidations());
+    }
+
+    @Test
+    public void throttledCheckIsNotCached() {
+        itms.withValidationStatus(429);
+        String cycle = newCycle();
+
+        check(cycle);
+        itms.withValidationStatus(200);
+
+        assertEquals(FormValidation.Kind.OK, check(cycle).kind);
+        assertEquals(2, itms.getValidations());
+    }
+
+    @Test
+    public void invalidUrlIsRejectedWithoutRequest() {
+        assertEquals(FormValidation.Kind.ERROR, configuration.doCheckJiraConfiguration("not a url", "PRJ",
+                "PRJ-1", newCycle()).kind);
+
+        assertEquals(0, itms.getValidations());
+    }
+
+    @Test
+    public void reachableAddressIsCached() throws IOException {
+        String address;
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            address = address(server.getLocalPort());
+            assertEquals(FormValidation.Kind.OK, testConfiguration(address).kind);
+        }
+
+        // Nothing listens any more, the address check is answered from the cache.
+        assertEquals(FormValidation.Kind.OK, testConfiguration(address).kind);
+    }
+
+    @Test
+    public void unreachableAddressIsNotCached() throws IOException {
+        int port;
+        try (ServerSocket free = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = free.getLocalPort();
+        }
+        String address = address(port);
+        assertEquals(FormValidation.Kind.ERROR, testConfiguration(address).kind);
+
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            assertEquals(FormValidation.Kind.OK, testConfiguration(address).kind);
+        }
+    }
+
+    private FormValidation testConfiguration(String address) {
+        return configuration.doTestConfiguration(address, "/target/reports", "PRJ", "PRJ-1", newCycle());
+    }
+
+    private static String address(int port) {
+        // Every test gets its own cache entries.
+        return "http://127.0.0.1:" + port + "/" + UUID.randomUUID() + FakeItmsServer.UPLOAD_PATH;
+    }
+
+    private FormValidation check(String cycle) {
+        return configuration.doCheckJiraConfiguration(itms.getUrl(FakeItmsServer.UPLOAD_PATH), "PRJ", "PRJ-1", cycle);
+    }
+
+    private static String newCycle() {
+        // Every test gets its own cache entries.
+        return "Cycle " + UUID.randomUUID();
+    }
+}
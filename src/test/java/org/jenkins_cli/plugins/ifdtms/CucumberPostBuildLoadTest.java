@@ -0,0 +1,181 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.model.queue.QueueTaskFuture;
+import hudson.util.Secret;
+import org.jenkins_cli.plugins.ifdtms.benchmark.SyntheticReports;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs many builds publishing thousands of reports to a {@link FakeItmsServer} at the same
+ * time, and logs throughput, build and request latency percentiles and peak heap use.
+ * Skipped unless {@code -Ditms.loadTest=true}; the shape of the load is set with the
+ * {@code itms.loadTest.*} system properties below.
+ */
+public class CucumberPostBuildLoadTest {
+
+    private static final String PREFIX = "itms.loadTest.";
+
+    private static final int BUILDS = Integer.getInteger(PREFIX + "builds", 20);
+    private static final int REPORTS_PER_BUILD = Integer.getInteger(PREFIX + "reportsPerBuild", 200);
+    private static final int REPORT_BYTES = Integer.getInteger(PREFIX + "reportBytes", 10 * 1024);
+    private static final String REPORT_FORMAT = System.getProperty(PREFIX + "reportFormat", XML_FORMAT);
+    private static final int LATENCY_MILLIS = Integer.getInteger(PREFIX + "latencyMillis", 50);
+    private static final double ERROR_RATE = Double.parseDouble(System.getProperty(PREFIX + "errorRate", "0"));
+    private static final long MAX_BODY_BYTES = Long.getLong(PREFIX + "maxBodyBytes", -1);
+    private static final int UPLOAD_THREADS = Integer.getInteger(PREFIX + "uploadThreads", DEFAULT_UPLOAD_THREADS);
+    private static final int BATCH_SIZE = Integer.getInteger(PREFIX + "batchSize", DEFAULT_BATCH_SIZE);
+    // Room for the form fields and part headers of a request carrying a single report.
+    private static final int BODY_OVERHEAD_BYTES = 4 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(CucumberPostBuildLoadTest.class.getName());
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private FakeItmsServer itms;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue("Load test, run with -Ditms.loadTest=true", Boolean.getBoolean("itms.loadTest"));
+        itms = new FakeItmsServer()
+                .withLatency(LATENCY_MILLIS)
+                .withErrorRate(ERROR_RATE)
+                .withMaxBodyBytes(MAX_BODY_BYTES);
+
+        CucumberGlobalConfiguration configuration = j.jenkins.getDescriptorByType(CucumberGlobalConfiguration.class);
+        configuration.getAuthenticationInfo().setUsername(Secret.fromString("load-test"));
+        configuration.getAuthenticationInfo().setToken(Secret.fromString("load-test-token"));
+        j.jenkins.setNumExecutors(BUILDS);
+    }
+
+    @After
+    public void tearDown() {
+        if (itms != null) {
+            itms.close();
+        }
+    }
+
+    @Test
+    public void concurrentBuilds() throws Exception {
+        List<FreeStyleProject> projects = new ArrayList<>();
+        for (int i = 0; i < BUILDS; i++) {
+            FreeStyleProject project = j.createFreeStyleProject("load-" + i);
+            project.getBuildersList().add(new WriteReports());
+            CucumberPostBuild publisher = new CucumberPostBuild(itms.getUrl(FakeItmsServer.UPLOAD_PATH),
+                    "/target/reports", REPORT_FORMAT, "LOAD", "LOAD-" + i, "Load test");
+            publisher.setUploadThreads(UPLOAD_THREADS);
+            publisher.setBatchSize(BATCH_SIZE);
+            project.getPublishersList().add(publisher);
+            projects.add(project);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong peakHeap = new AtomicLong(baselineHeap);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 100, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        List<FreeStyleBuild> builds = new ArrayList<>();
+        try {
+            List<QueueTaskFuture<FreeStyleBuild>> futures = new ArrayList<>();
+            for (FreeStyleProject project : projects) {
+                futures.add(project.scheduleBuild2(0));
+            }
+            for (QueueTaskFuture<FreeStyleBuild> future : futures) {
+                builds.add(j.assertBuildStatus(Result.SUCCESS, future));
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        List<Long> buildMillis = new ArrayList<>();
+        for (FreeStyleBuild build : builds) {
+            buildMillis.add(build.getDuration());
+        }
+        Collections.sort(buildMillis);
+
+        long totalReports = (long) BUILDS * REPORTS_PER_BUILD;
+        LOGGER.info(String.format("iTMS load test: %d builds x %d reports of %d bytes (%s), latency %d ms,"
+                        + " error rate %.2f", BUILDS, REPORTS_PER_BUILD, REPORT_BYTES, REPORT_FORMAT,
+                LATENCY_MILLIS, ERROR_RATE));
+        LOGGER.info(String.format("  wall time %d ms, %.1f reports/s, %.1f MB/s", elapsedMillis,
+                totalReports * 1000.0 / elapsedMillis, itms.getBodyBytes() / 1024.0 / 1024.0 * 1000 / elapsedMillis));
+        LOGGER.info(String.format("  build duration p50 %d ms, p95 %d ms, p99 %d ms, max %d ms",
+                percentile(buildMillis, 50), percentile(buildMillis, 95), percentile(buildMillis, 99),
+                buildMillis.get(buildMillis.size() - 1)));
+        LOGGER.info(String.format("  upload request p50 %d ms, p95 %d ms, p99 %d ms (server side)",
+                itms.getUploadMillis(50), itms.getUploadMillis(95), itms.getUploadMillis(99)));
+        LOGGER.info(String.format("  requests: %d accepted, %d failed with 503, %d rejected with 413",
+                itms.getUploads(), itms.getFailedUploads(), itms.getRejectedUploads()));
+        LOGGER.info(String.format("  heap: %d MB before, %d MB peak",
+                baselineHeap / 1024 / 1024, peakHeap.get() / 1024 / 1024));
+
+        // The 503s are retried and the batches answered with 413 are sent again one report at a time: in the
+        // end the server took every report, and none of them twice.
+        List<String> accepted = itms.getReportNames();
+        assertEquals("reports accepted more than once", new HashSet<>(accepted).size(), accepted.size());
+        if (MAX_BODY_BYTES < 0 || MAX_BODY_BYTES >= REPORT_BYTES + BODY_OVERHEAD_BYTES) {
+            assertEquals("reports accepted after " + itms.getFailedUploads() + " 503 and "
+                    + itms.getRejectedUploads() + " 413 answers", totalReports, accepted.size());
+            assertEquals(totalReports, itms.getReports());
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    /**
+     * Leaves the synthetic reports of a build in its workspace.
+     */
+    private static class WriteReports extends TestBuilder {
+        @Override
+        public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+                throws IOException {
+            File folder = new File(build.getWorkspace().getRemote(), "target/reports");
+            Files.createDirectories(folder.toPath());
+            String suffix = JSON_FORMAT.equals(REPORT_FORMAT) ? ".json" : ".xml";
+            for (int i = 0; i < REPORTS_PER_BUILD; i++) {
+                // Named after the job as well, so that the server can tell the reports of all builds apart.
+                SyntheticReports.write(new File(folder, "report-" + build.getParent().getName() + "-" + i + suffix),
+                        REPORT_FORMAT, REPORT_BYTES);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.model.Result;
+import hudson.util.Secret;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Publishes from a Pipeline to a {@link FakeItmsServer} and checks what iTMS is told about the build.
+ */
+public class CucumberPostBuildPipelineTest {
+
+    private static final String REPORT = "<testsuite name=\"Suite\" tests=\"1\" failures=\"0\" errors=\"0\">"
+            + "<testcase classname=\"Suite\" name=\"passes\"/></testsuite>";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private FakeItmsServer itms;
+
+    @Before
+    public void setUp() throws IOException {
+        itms = new FakeItmsServer();
+        CucumberGlobalConfiguration configuration = j.jenkins.getDescriptorByType(CucumberGlobalConfiguration.class);
+        configuration.getAuthenticationInfo().setUsername(Secret.fromString("pipeline-test"));
+        configuration.getAuthenticationInfo().setToken(Secret.fromString("pipeline-test-token"));
+    }
+
+    @After
+    public void tearDown() {
+        itms.close();
+    }
+
+    @Test
+    public void runningBuildIsReportedAsSuccessful() throws Exception {
+        j.assertBuildStatusSuccess(run(""));
+
+        List<Map<String, String>> uploads = itms.getUploadFields();
+        assertEquals(1, uploads.size());
+        assertEquals("success", uploads.get(0).get(ATTRIBUTE_BUILD_STATUS_PARAM));
+    }
+
+    @Test
+    public void resultSetByTheScriptIsReported() throws Exception {
+        j.assertBuildStatus(Result.UNSTABLE, run("currentBuild.result = 'UNSTABLE'\n"));
+
+        List<Map<String, String>> uploads = itms.getUploadFields();
+        assertEquals(1, uploads.size());
+        assertEquals("unstable", uploads.get(0).get(ATTRIBUTE_BUILD_STATUS_PARAM));
+    }
+
+    private WorkflowRun run(String beforePublish) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class);
+        job.setDefinition(new CpsFlowDefinition("node {\n"
+                + "  writeFile file: 'target/reports/TEST-Suite.xml', text: '" + REPORT + "'\n"
+                + "  " + beforePublish
+                + "  publishItmsReport itmsAddress: '" + itms.getUrl(FakeItmsServer.UPLOAD_PATH) + "',"
+                + " reportFolder: '/target/reports', reportFormat: '" + XML_FORMAT + "',"
+                + " jiraProjectKey: 'PRJ', jiraTicketKey: 'PRJ-1', itmsCycleName: 'Pipeline'\n"
+                + "}", true));
+        return job.scheduleBuild2(0).get();
+    }
+}
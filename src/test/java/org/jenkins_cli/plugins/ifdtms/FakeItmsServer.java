@@ -0,0 +1,291 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for iTMS, on the loopback interface. It answers the requests
+ * {@code RequestApi} makes: authentication, {@code validate_jenkins_job_configuration}
+ * and report uploads, which are read and discarded. Latency, the share of requests
+ * failing with 503, whether they carry Retry-After and the largest accepted body can
+ * be set to mimic a loaded server or a proxy in front of it.
+ */
+public class FakeItmsServer implements AutoCloseable {
+
+    static final String UPLOAD_PATH = "/api/test_results";
+    static final String AUTH_PATH = "/api/auth";
+    static final String VALIDATE_PATH = "/api/validate_jenkins_job_configuration";
+
+    private static final int FIELDS_BYTES = 16 * 1024;
+    private static final Pattern FIELD = Pattern.compile("name=\"([^\"]+)\"\r\n[^\r\n]*\r\n\r\n([^\r\n]*)\r\n");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+    private volatile long maxBodyBytes = -1;
+    private volatile int validationStatus = 200;
+    private volatile long retryAfterSeconds = -1;
+    private final AtomicLong failingUploads = new AtomicLong();
+
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong failedUploads = new AtomicLong();
+    private final AtomicLong rejectedUploads = new AtomicLong();
+    private final AtomicLong reports = new AtomicLong();
+    private final AtomicLong bodyBytes = new AtomicLong();
+    private final AtomicLong validations = new AtomicLong();
+    private final List<Long> uploadNanos = Collections.synchronizedList(new ArrayList<>());
+    private final List<Map<String, String>> uploadFields = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> reportNames = Collections.synchronizedList(new ArrayList<>());
+
+    public FakeItmsServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(UPLOAD_PATH, this::upload);
+        server.createContext(AUTH_PATH, exchange -> answer(exchange, 200, "{\"message\":\"Authenticated\"}"));
+        server.createContext(VALIDATE_PATH, this::validate);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    public FakeItmsServer withLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    public FakeItmsServer withErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public FakeItmsServer withMaxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        return this;
+    }
+
+    /**
+     * Answers the next uploads with 503, whatever the error rate.
+     */
+    public FakeItmsServer withFailingUploads(long failingUploads) {
+        this.failingUploads.set(failingUploads);
+        return this;
+    }
+
+    /**
+     * Sends Retry-After with the 503 answers, none when negative.
+     */
+    public FakeItmsServer withRetryAfter(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * Answers the job configuration checks with the given status.
+     */
+    public FakeItmsServer withValidationStatus(int validationStatus) {
+        this.validationStatus = validationStatus;
+        return this;
+    }
+
+    private void validate(HttpExchange exchange) throws IOException {
+        validations.incrementAndGet();
+        int status = validationStatus;
+        answer(exchange, status, status == 200 ? "{\"message\":\"Configuration is valid\"}"
+                : "{\"message\":\"Configuration check failed with " + status + "\"}");
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            long length = 0;
+            byte[] buffer = new byte[64 * 1024];
+            FileNames fileNames = new FileNames();
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            try (InputStream in = exchange.getRequestBody()) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    length += read;
+                    // The form fields come before the reports.
+                    head.write(buffer, 0, (int) Math.min(read, Math.max(0, FIELDS_BYTES - head.size())));
+                    // Finds the report parts, good enough for bodies that are not compressed.
+                    fileNames.scan(buffer, read);
+                    if (maxBodyBytes >= 0 && length > maxBodyBytes) {
+                        rejectedUploads.incrementAndGet();
+                        answer(exchange, 413, "Request Entity Too Large");
+                        return;
+                    }
+                }
+            }
+            bodyBytes.addAndGet(length);
+            sleep(latencyMillis);
+
+            if (failingUploads.getAndUpdate(n -> Math.max(0, n - 1)) > 0
+                    || (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate)) {
+                failedUploads.incrementAndGet();
+                if (retryAfterSeconds >= 0) {
+                    exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+                }
+                answer(exchange, 503, "Service Unavailable");
+                return;
+            }
+            uploads.incrementAndGet();
+            reports.addAndGet(Math.max(fileNames.names.size(), 1));
+            reportNames.addAll(fileNames.names);
+            uploadFields.add(fields(head.toString(StandardCharsets.UTF_8.name())));
+            answer(exchange, 200, "{\"message\":\"Report uploaded\"}");
+        } finally {
+            uploadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private static Map<String, String> fields(String head) {
+        Map<String, String> fields = new HashMap<>();
+        Matcher matcher = FIELD.matcher(head);
+        while (matcher.find()) {
+            fields.put(matcher.group(1), matcher.group(2));
+        }
+        return fields;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void answer(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public long getValidations() {
+        return validations.get();
+    }
+
+    public long getUploads() {
+        return uploads.get();
+    }
+
+    public long getFailedUploads() {
+        return failedUploads.get();
+    }
+
+    public long getRejectedUploads() {
+        return rejectedUploads.get();
+    }
+
+    public long getReports() {
+        return reports.get();
+    }
+
+    public long getBodyBytes() {
+        return bodyBytes.get();
+    }
+
+    /**
+     * @return the form fields of each accepted upload, in the order they were accepted
+     */
+    public List<Map<String, String>> getUploadFields() {
+        synchronized (uploadFields) {
+            return new ArrayList<>(uploadFields);
+        }
+    }
+
+    /**
+     * @return the file name of each accepted report, a report accepted twice is listed twice
+     */
+    public List<String> getReportNames() {
+        synchronized (reportNames) {
+            return new ArrayList<>(reportNames);
+        }
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the server side time of upload requests at that percentile, in milliseconds
+     */
+    public long getUploadMillis(double percentile) {
+        List<Long> sorted;
+        synchronized (uploadNanos) {
+            sorted = new ArrayList<>(uploadNanos);
+        }
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))));
+    }
+
+    /**
+     * Picks the report file names out of a multipart body read in chunks.
+     */
+    private static class FileNames {
+        private static final byte[] MARKER = "filename=\"".getBytes(StandardCharsets.US_ASCII);
+
+        private final List<String> names = new ArrayList<>();
+        private final ByteArrayOutputStream name = new ByteArrayOutputStream();
+        private int matched;
+        private boolean inName;
+
+        void scan(byte[] buffer, int length) {
+            for (int i = 0; i < length; i++) {
+                byte b = buffer[i];
+                if (inName) {
+                    if (b == '"') {
+                        names.add(new String(name.toByteArray(), StandardCharsets.UTF_8));
+                        name.reset();
+                        inName = false;
+                    } else {
+                        name.write(b);
+                    }
+                } else if (b == MARKER[matched]) {
+                    if (++matched == MARKER.length) {
+                        inName = true;
+                        matched = 0;
+                    }
+                } else {
+                    matched = b == MARKER[0] ? 1 : 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,85 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.Util;
+import hudson.util.StreamTaskListener;
+import org.jenkins_cli.plugins.ifdtms.model.ReportProcessingOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrepareReportsCallableTest {
+
+    private static final String JUNIT_REPORT = "<testsuite name=\"Suite\" tests=\"1\">"
+            + "<testcase classname=\"Suite\" name=\"passes\"><system-out>output</system-out></testcase></testsuite>";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void sendsReportsTheFilterCannotReadUnfiltered() throws Exception {
+        File reportFolder = tmp.newFolder("reports");
+        write(new File(reportFolder, "good.xml"), JUNIT_REPORT);
+        String malformed = "<testsuite><testcase><system-out>output</system-out></testsuite>";
+        write(new File(reportFolder, "bad.xml"), malformed);
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ReportProcessingOptions options = new ReportProcessingOptions(OUTPUT_STRIP, DEFAULT_OUTPUT_MAX_CHARS, false,
+                EMBEDDINGS_KEEP, DEFAULT_EMBEDDING_MAX_KILOBYTES, 0);
+        PrepareReportsCallable.PreparedReports prepared = new PrepareReportsCallable(options,
+                Arrays.asList("good.xml", "bad.xml"), false, new StreamTaskListener(log)).invoke(reportFolder, null);
+        try {
+            assertEquals(Arrays.asList("good.xml", "bad.xml"), new ArrayList<>(prepared.getOriginalPaths().keySet()));
+            assertFalse(read(new File(prepared.getFolder(), "good.xml")).contains("system-out"));
+            assertEquals(malformed, read(new File(prepared.getFolder(), "bad.xml")));
+            assertTrue(log.toString(StandardCharsets.UTF_8.name()).contains("Sending bad.xml unfiltered"));
+        } finally {
+            Util.deleteRecursive(new File(prepared.getFolder()));
+        }
+    }
+
+    @Test
+    public void dropsTheEmbeddingsOfReportsSentUnfiltered() throws Exception {
+        File reportFolder = tmp.newFolder("reports");
+        String invalid = "[{\"name\":\"a feature\",\"embeddings\":[{\"mime_type\":\"image/png\",\"data\":\"AAAA\"},"
+                + "{\"mime_type\":\"image/png\",\"data\":\"not base64!\"}]}]";
+        write(new File(reportFolder, "features/invalid.json"), invalid);
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ReportProcessingOptions options = new ReportProcessingOptions(OUTPUT_KEEP, DEFAULT_OUTPUT_MAX_CHARS, false,
+                EMBEDDINGS_LINK, DEFAULT_EMBEDDING_MAX_KILOBYTES, 0);
+        options.setEmbeddingsUrl("http://jenkins/job/a/1/artifact/" + EMBEDDINGS_ARTIFACTS_FOLDER + "/");
+        PrepareReportsCallable.PreparedReports prepared = new PrepareReportsCallable(options,
+                Arrays.asList("features/invalid.json"), true, new StreamTaskListener(log)).invoke(reportFolder, null);
+        try {
+            assertEquals(invalid, read(new File(prepared.getFolder(), "features/invalid.json")));
+            assertEquals(0, prepared.getEmbeddings());
+            assertFalse(new File(new File(prepared.getFolder(), PrepareReportsCallable.EMBEDDINGS_FOLDER),
+                    "features/invalid.json").exists());
+            assertTrue(log.toString(StandardCharsets.UTF_8.name()).contains("Sending features/invalid.json unfiltered"));
+        } finally {
+            Util.deleteRecursive(new File(prepared.getFolder()));
+        }
+    }
+
+    static void write(File file, String content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.util.Secret;
+import org.jenkins_cli.plugins.ifdtms.rest.ItmsEndpoints;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Uploads to two {@link FakeItmsServer} nodes, the first one failing.
+ */
+public class ReportFailoverTest {
+
+    private static final String REPORT = "<testsuite name=\"Suite\" tests=\"1\" failures=\"0\" errors=\"0\">"
+            + "<testcase classname=\"Suite\" name=\"passes\"/></testsuite>";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private FakeItmsServer first;
+    private FakeItmsServer second;
+
+    @Before
+    public void setUp() throws IOException {
+        first = new FakeItmsServer();
+        second = new FakeItmsServer();
+        ItmsEndpoints.configure(Arrays.asList(first.getUrl(""), second.getUrl("")));
+
+        CucumberGlobalConfiguration configuration = j.jenkins.getDescriptorByType(CucumberGlobalConfiguration.class);
+        configuration.getAuthenticationInfo().setUsername(Secret.fromString("failover-test"));
+        configuration.getAuthenticationInfo().setToken(Secret.fromString("failover-test-token"));
+    }
+
+    @After
+    public void tearDown() {
+        ItmsEndpoints.configure(Collections.emptyList());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void unreachableNodeFailsOverAtOnce() throws Exception {
+        first.close();
+
+        FreeStyleBuild build = j.buildAndAssertSuccess(createProject());
+
+        assertEquals(1, second.getReports());
+        j.assertLogContains("[failed over from " + first.getUrl("") + "]", build);
+        j.assertLogNotContains("[retried", build);
+    }
+
+    @Test
+    public void failingNodeIsNotRetried() throws Exception {
+        first.withErrorRate(1);
+
+        j.buildAndAssertSuccess(createProject());
+
+        assertEquals(1, first.getFailedUploads());
+        assertEquals(1, second.getReports());
+    }
+
+    @Test
+    public void busyNodeIsRetriedWhenItAsksTo() throws Exception {
+        first.withErrorRate(1).withRetryAfter(0);
+
+        j.buildAndAssertSuccess(createProject());
+
+        // The first attempt and every retry of the policy, then the other node.
+        assertEquals(4, first.getFailedUploads());
+        assertEquals(1, second.getReports());
+    }
+
+    @Test
+    public void lastNodeIsRetried() throws Exception {
+        ItmsEndpoints.configure(Collections.singletonList(first.getUrl("")));
+        first.withErrorRate(1);
+
+        FreeStyleBuild build = j.buildAndAssertSuccess(createProject());
+
+        assertEquals(4, first.getFailedUploads());
+        j.assertLogContains("[retried 3 time(s)]", build);
+    }
+
+    private FreeStyleProject createProject() throws IOException {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.getBuildersList().add(new WriteReport());
+        project.getPublishersList().add(new CucumberPostBuild(first.getUrl(FakeItmsServer.UPLOAD_PATH),
+                "/target/reports", XML_FORMAT, "PRJ", "PRJ-1", "Failover"));
+        return project;
+    }
+
+    private static class WriteReport extends TestBuilder {
+        @Override
+        public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+                throws IOException, InterruptedException {
+            build.getWorkspace().child("target/reports/TEST-Suite.xml").write(REPORT, "UTF-8");
+            return true;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.FilePath;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.jenkins_cli.plugins.ifdtms.benchmark.SyntheticReports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Report discovery through {@link FilePath#list(String)} and whole-file reads, both the
+ * former read-into-a-String path and the streamed one used by uploads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportFilesBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ReportTree {
+
+        @Param({"100", "10000"})
+        public int reportCount;
+
+        private FilePath root;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            root = new FilePath(Files.createTempDirectory("reports").toFile());
+            // Reports spread over nested module folders, next to as many files that are not reports.
+            for (int i = 0; i < reportCount; i++) {
+                File folder = new File(root.getRemote(), "module" + (i % 50) + "/target/surefire-reports");
+                Files.createDirectories(folder.toPath());
+                SyntheticReports.write(new File(folder, "TEST-Suite" + i + ".xml"), XML_FORMAT, 1024);
+                Files.write(new File(folder, "Suite" + i + ".txt").toPath(), new byte[128]);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException, InterruptedException {
+            root.deleteRecursive();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Report {
+
+        @Param({"1024", "1048576", "52428800", "524288000"})
+        public long reportBytes;
+
+        private FilePath report;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            report = new FilePath(SyntheticReports.write(File.createTempFile("report", ".xml"), XML_FORMAT,
+                    reportBytes));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException, InterruptedException {
+            report.delete();
+        }
+    }
+
+    @Benchmark
+    public FilePath[] discoverReports(ReportTree tree) throws IOException, InterruptedException {
+        return tree.root.list("**/*.xml");
+    }
+
+    @Benchmark
+    public int readToString(Report report) throws IOException, InterruptedException {
+        return report.report.readToString().trim().length();
+    }
+
+    @Benchmark
+    public long readStreamed(Report report) throws IOException {
+        try (InputStream in = new FilePathReportContent(report.report).open()) {
+            return IOUtils.copyLarge(in, NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import org.jenkins_cli.plugins.ifdtms.rest.CircuitBreaker;
+import org.jenkins_cli.plugins.ifdtms.rest.StandardResponse;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReportUploaderTest {
+
+    @Test
+    public void batchRejectionNeedsAnErrorAboutTheNumberOfReports() {
+        assertTrue(ReportUploader.isBatchRejected(new StandardResponse(400, "Bad Request",
+                "400: Bad Request: only one report_content file is allowed per request")));
+        assertTrue(ReportUploader.isBatchRejected(new StandardResponse(422, "Unprocessable Entity",
+                "422: Unprocessable Entity: multiple reports are not supported")));
+    }
+
+    @Test
+    public void otherClientErrorsAreNoBatchRejection() {
+        assertFalse(ReportUploader.isBatchRejected(new StandardResponse(400, "Bad Request",
+                "400: Bad Request: unknown test cycle")));
+        assertFalse(ReportUploader.isBatchRejected(new StandardResponse(422, "Unprocessable Entity",
+                "422: Unprocessable Entity: malformed report TEST-Suite.xml")));
+        assertFalse(ReportUploader.isBatchRejected(new StandardResponse(413, "Payload Too Large",
+                "413: Payload Too Large: multiple reports exceed the limit")));
+        assertFalse(ReportUploader.isBatchRejected(new StandardResponse(500, "Server Error",
+                "500: Server Error: multiple reports")));
+    }
+
+    @Test
+    public void busyNodeWithRetryAfterIsWaitedFor() {
+        assertTrue(ReportUploader.isAskedToWait(withRetryAfter(new StandardResponse(503, "Service Unavailable",
+                "503: Service Unavailable"), 0)));
+        assertTrue(ReportUploader.isAskedToWait(withRetryAfter(new StandardResponse(429, "Too Many Requests",
+                "429: Too Many Requests"), 2000)));
+    }
+
+    @Test
+    public void otherFailuresMoveOnToTheNextNode() {
+        assertFalse(ReportUploader.isAskedToWait(new StandardResponse(503, "Service Unavailable",
+                "503: Service Unavailable")));
+        assertFalse(ReportUploader.isAskedToWait(withRetryAfter(new StandardResponse(500, "Server Error",
+                "500: Server Error"), 1000)));
+        assertFalse(ReportUploader.isAskedToWait(new StandardResponse(0, null, "0: Connection refused")));
+    }
+
+    @Test
+    public void outagesAreTransientFailures() {
+        assertTrue(ReportUploader.isTransient(0));
+        assertTrue(ReportUploader.isTransient(CircuitBreaker.REJECTED));
+        assertTrue(ReportUploader.isTransient(408));
+        assertTrue(ReportUploader.isTransient(429));
+        assertTrue(ReportUploader.isTransient(503));
+        assertFalse(ReportUploader.isTransient(400));
+        assertFalse(ReportUploader.isTransient(413));
+        assertFalse(ReportUploader.isTransient(422));
+    }
+
+    private static StandardResponse withRetryAfter(StandardResponse response, long retryAfterMillis) {
+        response.setRetryAfterMillis(retryAfterMillis);
+        return response;
+    }
+}
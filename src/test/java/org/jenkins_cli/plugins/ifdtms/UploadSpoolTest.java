@@ -0,0 +1,203 @@
+package org.jenkins_cli.plugins.ifdtms;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.util.DirScanner;
+import hudson.util.Secret;
+import org.jenkins_cli.plugins.ifdtms.rest.RetryPolicy;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.RestartableJenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drains the asynchronous upload spools into a {@link FakeItmsServer}, across a restart as well.
+ */
+public class UploadSpoolTest {
+
+    private static final String REPORT = "<testsuite name=\"Suite\" tests=\"1\" failures=\"0\" errors=\"0\">"
+            + "<testcase classname=\"Suite\" name=\"passes\"/></testsuite>";
+
+    @Rule
+    public RestartableJenkinsRule story = new RestartableJenkinsRule();
+
+    private FakeItmsServer itms;
+
+    @After
+    public void tearDown() {
+        if (itms != null) {
+            itms.close();
+        }
+    }
+
+    @Test
+    public void asyncUploadDrainsTheSpool() {
+        story.then(j -> {
+            FreeStyleProject project = createProject(j);
+            project.getPublishersList().add(newPublisher(true));
+            FreeStyleBuild build = j.buildAndAssertSuccess(project);
+
+            ItmsUploadAction action = awaitFinished(build);
+            assertEquals(1, action.getSummary().getSucceeded());
+            assertEquals(1, itms.getReports());
+            assertNoSpoolLeft(build);
+        });
+    }
+
+    @Test
+    public void pendingSpoolIsUploadedAfterRestart() {
+        story.then(j -> {
+            FreeStyleBuild build = j.buildAndAssertSuccess(createProject(j));
+            // Spooled but not dispatched, as if the controller stopped right after the build.
+            String spoolName = UploadSpool.create(build, newPublisher(true),
+                    build.getWorkspace().child("target/reports"), new DirScanner.Glob("**/*", null));
+            ItmsUploadAction.forSpool(build, spoolName);
+            build.save();
+            new XmlFile(new File(j.jenkins.getRootDir(), UploadSpoolDispatcher.class.getName() + ".xml"))
+                    .write(new ArrayList<>(Collections.singletonList(build.getExternalizableId() + "/" + spoolName)));
+            assertEquals(0, itms.getReports());
+        });
+        story.then(j -> {
+            FreeStyleBuild build = j.jenkins.getItemByFullName("spool", FreeStyleProject.class).getBuildByNumber(1);
+
+            ItmsUploadAction action = awaitFinished(build);
+            assertEquals(1, action.getSummary().getSucceeded());
+            assertEquals(1, itms.getReports());
+            assertNoSpoolLeft(build);
+        });
+    }
+
+    @Test
+    public void spoolOutlivesAnOutage() {
+        long retryDelaySeconds = UploadSpoolDispatcher.RETRY_DELAY_SECONDS;
+        UploadSpoolDispatcher.RETRY_DELAY_SECONDS = 1;
+        try {
+            story.then(j -> {
+                FreeStyleProject project = createProject(j);
+                // The first attempt and its retries all get a 503, the spool is tried again later.
+                itms.withFailingUploads(RetryPolicy.DEFAULT.getMaxRetries() + 1);
+                project.getPublishersList().add(newPublisher(true));
+                FreeStyleBuild build = j.buildAndAssertSuccess(project);
+
+                ItmsUploadAction action = awaitFinished(build);
+                assertEquals(1, action.getSummary().getSucceeded());
+                assertEquals(0, action.getSummary().getFailed());
+                assertEquals(RetryPolicy.DEFAULT.getMaxRetries() + 1, itms.getFailedUploads());
+                assertEquals(1, itms.getReports());
+                assertTrue(FileUtils.readFileToString(UploadSpool.getUploadLog(build), StandardCharsets.UTF_8)
+                        .contains("stay spooled for another attempt"));
+                assertNoSpoolLeft(build);
+            });
+        } finally {
+            UploadSpoolDispatcher.RETRY_DELAY_SECONDS = retryDelaySeconds;
+        }
+    }
+
+    @Test
+    public void rejectedReportIsNotTriedAgain() {
+        story.then(j -> {
+            FreeStyleProject project = createProject(j);
+            itms.withMaxBodyBytes(0);
+            project.getPublishersList().add(newPublisher(true));
+            FreeStyleBuild build = j.buildAndAssertSuccess(project);
+
+            ItmsUploadAction action = awaitFinished(build);
+            assertEquals(1, action.getSummary().getFailed());
+            // Answered 413 as a batch, then one by one: a verdict on the report, not an outage.
+            assertTrue(itms.getRejectedUploads() > 0);
+            assertEquals(0, itms.getReports());
+            assertNoSpoolLeft(build);
+        });
+    }
+
+    @Test
+    public void discardedSpoolCountsItsReportsAsFailed() {
+        story.then(j -> {
+            FreeStyleBuild build = j.buildAndAssertSuccess(createProject(j));
+            String spoolName = UploadSpool.create(build, newPublisher(true),
+                    build.getWorkspace().child("target/reports"), new DirScanner.Glob("**/*", null));
+
+            UploadSpool.discard(build, spoolName, new IOException("disk full"));
+
+            ItmsUploadAction action = ItmsUploadAction.forSpool(build, spoolName);
+            assertEquals(ItmsUploadAction.Status.FINISHED, action.getStatus());
+            assertEquals(1, action.getSummary().getFailed());
+            assertTrue(FileUtils.readFileToString(UploadSpool.getUploadLog(build), StandardCharsets.UTF_8)
+                    .contains("disk full"));
+            assertNoSpoolLeft(build);
+            assertEquals(0, itms.getReports());
+        });
+    }
+
+    private FreeStyleProject createProject(JenkinsRule j) throws IOException {
+        itms = new FakeItmsServer();
+        CucumberGlobalConfiguration configuration = j.jenkins.getDescriptorByType(CucumberGlobalConfiguration.class);
+        configuration.getAuthenticationInfo().setUsername(Secret.fromString("spool-test"));
+        configuration.getAuthenticationInfo().setToken(Secret.fromString("spool-test-token"));
+        configuration.save();
+
+        FreeStyleProject project = j.createFreeStyleProject("spool");
+        project.getBuildersList().add(new WriteReport());
+        return project;
+    }
+
+    private CucumberPostBuild newPublisher(boolean asyncUpload) {
+        CucumberPostBuild publisher = new CucumberPostBuild(itms.getUrl(FakeItmsServer.UPLOAD_PATH),
+                "/target/reports", XML_FORMAT, "PRJ", "PRJ-1", "Spool");
+        publisher.setAsyncUpload(asyncUpload);
+        return publisher;
+    }
+
+    private static ItmsUploadAction awaitFinished(FreeStyleBuild build) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        while (true) {
+            ItmsUploadAction action = build.getAction(ItmsUploadAction.class);
+            if (action != null && action.getStatus() == ItmsUploadAction.Status.FINISHED) {
+                assertNotNull(action.getSummary());
+                return action;
+            }
+            assertTrue("upload not finished in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+        }
+    }
+
+    private static void assertNoSpoolLeft(FreeStyleBuild build) throws Exception {
+        FilePath spools = new FilePath(new File(build.getRootDir(), "itms-spool"));
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        // The spool is deleted right after the upload finished.
+        while (spools.exists() && !spools.list().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertFalse(spools.exists() && !spools.list().isEmpty());
+    }
+
+    private static class WriteReport extends TestBuilder {
+        @Override
+        public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+                throws IOException, InterruptedException {
+            build.getWorkspace().child("target/reports/TEST-Suite.xml").write(REPORT, "UTF-8");
+            return true;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.jenkins_cli.plugins.ifdtms.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP server on the loopback interface that reads and discards every request body
+ * and answers like iTMS does for an accepted report.
+ */
+public class LoopbackSink implements AutoCloseable {
+
+    private static final byte[] ACCEPTED = "{\"message\":\"Report uploaded\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    public LoopbackSink() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read(buffer) >= 0) {
+                    // Discarded.
+                }
+            }
+            exchange.sendResponseHeaders(200, ACCEPTED.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(ACCEPTED);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,82 @@
+package org.jenkins_cli.plugins.ifdtms.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Writes JUnit and Cucumber JSON reports of (roughly) a requested size, shaped like
+ * the ones real builds produce: many small test cases or steps with some console
+ * output, and for Cucumber a base64 screenshot embedded now and then.
+ */
+public final class SyntheticReports {
+
+    private SyntheticReports() {
+    }
+
+    public static File write(File file, String reportFormat, long bytes) throws IOException {
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            if (JSON_FORMAT.equals(reportFormat)) {
+                writeCucumber(out, bytes);
+            } else {
+                writeJUnit(out, bytes);
+            }
+        }
+        return file;
+    }
+
+    private static void writeJUnit(Writer out, long bytes) throws IOException {
+        long written = write(out, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites>\n");
+        for (int suite = 0; written < bytes; suite++) {
+            written += write(out, "  <testsuite name=\"com.example.Suite" + suite + "\" tests=\"50\" failures=\"1\">\n");
+            for (int test = 0; test < 50 && written < bytes; test++) {
+                written += write(out, "    <testcase classname=\"com.example.Suite" + suite + "\" name=\"test"
+                        + test + "\" time=\"0.0" + test + "\">\n");
+                if (test == 0) {
+                    written += write(out, "      <failure message=\"expected:&lt;1&gt; but was:&lt;2&gt;\">"
+                            + "java.lang.AssertionError</failure>\n");
+                }
+                written += write(out, "      <system-out>INFO starting test" + test
+                        + " with a line of log output that is about this long</system-out>\n    </testcase>\n");
+            }
+            written += write(out, "  </testsuite>\n");
+        }
+        write(out, "</testsuites>\n");
+    }
+
+    private static void writeCucumber(Writer out, long bytes) throws IOException {
+        String screenshot = Base64.getEncoder().encodeToString(new byte[16 * 1024]);
+        long written = write(out, "[");
+        for (int feature = 0; written < bytes; feature++) {
+            written += write(out, (feature > 0 ? "," : "") + "{\"id\":\"feature-" + feature
+                    + "\",\"name\":\"Feature " + feature + "\",\"keyword\":\"Feature\",\"elements\":[");
+            for (int scenario = 0; scenario < 20 && written < bytes; scenario++) {
+                written += write(out, (scenario > 0 ? "," : "") + "{\"name\":\"Scenario " + scenario
+                        + "\",\"type\":\"scenario\",\"steps\":[");
+                for (int step = 0; step < 5; step++) {
+                    written += write(out, (step > 0 ? "," : "") + "{\"keyword\":\"Given \",\"name\":\"step "
+                            + step + "\",\"result\":{\"status\":\"passed\",\"duration\":1200000}");
+                    if (step == 4 && scenario % 10 == 0) {
+                        written += write(out, ",\"embeddings\":[{\"mime_type\":\"image/png\",\"data\":\""
+                                + screenshot + "\"}]");
+                    }
+                    written += write(out, "}");
+                }
+                written += write(out, "]}");
+            }
+            written += write(out, "]}");
+        }
+        write(out, "]");
+    }
+
+    private static long write(Writer out, String text) throws IOException {
+        out.write(text);
+        return text.length();
+    }
+}
@@ -0,0 +1,44 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void rejectionIsNotRetried() {
+        CircuitBreaker breaker = open();
+
+        StandardResponse rejection = breaker.rejection();
+
+        assertEquals(CircuitBreaker.REJECTED, rejection.getCode());
+        assertFalse(rejection.isSuccessful());
+        assertFalse(RetryPolicy.DEFAULT.isRetryable(rejection.getCode()));
+        assertTrue(RetryPolicy.DEFAULT.isRetryable(0));
+    }
+
+    @Test
+    public void openCircuitRefusesRequests() {
+        CircuitBreaker breaker = open();
+
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    private static CircuitBreaker open() {
+        CircuitBreaker breaker = CircuitBreaker.forServer(newServer());
+        for (int i = 0; i < 100 && breaker.allowRequest(); i++) {
+            breaker.recordFailure();
+        }
+        return breaker;
+    }
+
+    private static String newServer() {
+        return "http://itms-" + UUID.randomUUID() + ".invalid/api/test_results";
+    }
+}
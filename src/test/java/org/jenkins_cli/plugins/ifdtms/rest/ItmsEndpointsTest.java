@@ -0,0 +1,59 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ItmsEndpointsTest {
+
+    private static final String ADDRESS = "https://itms-1.example.com/api/test_results";
+
+    @After
+    public void removeNodes() {
+        ItmsEndpoints.configure(Collections.emptyList());
+    }
+
+    @Test
+    public void hasUntriedFollowsSelect() {
+        ItmsEndpoints.configure(Arrays.asList("https://itms-1.example.com", "https://itms-2.example.com"));
+        Set<String> tried = new HashSet<>();
+
+        assertTrue(ItmsEndpoints.hasUntried(ADDRESS, tried));
+        tried.add(ItmsEndpoints.select(ADDRESS, tried).getServer());
+        assertTrue(ItmsEndpoints.hasUntried(ADDRESS, tried));
+        tried.add(ItmsEndpoints.select(ADDRESS, tried).getServer());
+        assertFalse(ItmsEndpoints.hasUntried(ADDRESS, tried));
+        assertNull(ItmsEndpoints.select(ADDRESS, tried));
+    }
+
+    @Test
+    public void addressOffTheNodesIsItsOwnNode() {
+        Set<String> tried = new HashSet<>();
+
+        assertTrue(ItmsEndpoints.hasUntried(ADDRESS, tried));
+        ItmsEndpoints.Endpoint endpoint = ItmsEndpoints.select(ADDRESS, tried);
+        assertEquals("https://itms-1.example.com", endpoint.getServer());
+        tried.add(endpoint.getServer());
+        assertFalse(ItmsEndpoints.hasUntried(ADDRESS, tried));
+    }
+
+    @Test
+    public void hasUntriedPicksNoNode() {
+        ItmsEndpoints.configure(Arrays.asList("https://itms-1.example.com", "https://itms-2.example.com"));
+
+        ItmsEndpoints.hasUntried(ADDRESS, Collections.emptySet());
+
+        // Both were never picked, the first configured one still wins the tie.
+        assertEquals("https://itms-1.example.com",
+                ItmsEndpoints.select(ADDRESS, Collections.emptySet()).getServer());
+    }
+}
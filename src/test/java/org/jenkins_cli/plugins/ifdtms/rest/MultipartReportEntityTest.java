@@ -0,0 +1,95 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import hidden.jth.org.apache.http.client.entity.GzipCompressingEntity;
+import hidden.jth.org.apache.http.util.EntityUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MultipartReportEntityTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void contentMatchesTheWrittenBody() throws Exception {
+        MultipartReportEntity entity = new MultipartReportEntity(body(), new RequestTimings());
+
+        byte[] content = EntityUtils.toByteArray(entity);
+
+        assertArrayEquals(written(entity), content);
+        assertEquals(entity.getContentLength(), content.length);
+        assertTrue(new String(content, StandardCharsets.UTF_8).endsWith("--\r\n"));
+    }
+
+    @Test
+    public void contentCanBeReadAgain() throws Exception {
+        MultipartReportEntity entity = new MultipartReportEntity(body(), new RequestTimings());
+
+        assertTrue(entity.isRepeatable());
+        assertFalse(entity.isStreaming());
+        assertArrayEquals(EntityUtils.toByteArray(entity), EntityUtils.toByteArray(entity));
+    }
+
+    @Test
+    public void contentReadsByteByByte() throws Exception {
+        MultipartReportEntity entity = new MultipartReportEntity(body(), new RequestTimings());
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = entity.getContent()) {
+            int b;
+            while ((b = in.read()) >= 0) {
+                content.write(b);
+            }
+        }
+
+        assertArrayEquals(written(entity), content.toByteArray());
+    }
+
+    @Test
+    public void compressedEntityCanBeRead() throws Exception {
+        MultipartReportEntity entity = new MultipartReportEntity(body(), new RequestTimings());
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new GzipCompressingEntity(entity).writeTo(compressed);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                content.write(buffer, 0, read);
+            }
+        }
+
+        assertArrayEquals(EntityUtils.toByteArray(entity), content.toByteArray());
+    }
+
+    private MultipartReportBody body() throws Exception {
+        File report = folder.newFile("TEST-Suite.xml");
+        Files.write(report.toPath(), "<testsuite name=\"Suite\"/>".getBytes(StandardCharsets.UTF_8));
+        MultipartReportBody body = new MultipartReportBody(Collections.singletonMap("build_number", "1"));
+        body.addReport(report.getName(), ReportContent.of(report), false);
+        body.addReport("cucumber.json", ReportContent.of("[]".getBytes(StandardCharsets.UTF_8)), true);
+        return body;
+    }
+
+    private static byte[] written(MultipartReportEntity entity) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        entity.writeTo(output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,253 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link NioTransport} against servers on the loopback interface.
+ */
+public class NioTransportTest {
+
+    private static final int REPORT_BYTES = 3 * 1024 * 1024;
+    private static final TransportTimeouts TIMEOUTS = new TransportTimeouts(5000, 5000, 20000);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private MultipartReportBody body;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.start();
+        File report = tmp.newFile("TEST-Large.xml");
+        byte[] content = new byte[REPORT_BYTES];
+        Arrays.fill(content, (byte) 'x');
+        Files.write(report.toPath(), content);
+        body = new MultipartReportBody(Collections.singletonMap("cycle_name", "Nightly"));
+        body.addReport(report.getName(), ReportContent.of(report), false);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void sendsTheWholeBody() throws Exception {
+        AtomicLong received = new AtomicLong();
+        server.createContext("/upload", exchange -> {
+            received.set(drain(exchange.getRequestBody()));
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+        });
+
+        assertTrue(NioTransport.isApplicable(url("/upload"), body, false));
+        TransportResponse response = post(url("/upload"), TIMEOUTS);
+
+        assertEquals(201, response.getCode());
+        assertEquals(body.getContentLength(), received.get());
+    }
+
+    @Test
+    public void readsErrorBodiesAndRetryAfter() throws Exception {
+        server.createContext("/busy", exchange -> {
+            drain(exchange.getRequestBody());
+            byte[] answer = "iTMS is busy".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Retry-After", "2");
+            exchange.sendResponseHeaders(503, answer.length);
+            exchange.getResponseBody().write(answer);
+            exchange.close();
+        });
+
+        TransportResponse response = post(url("/busy"), TIMEOUTS);
+
+        assertEquals(503, response.getCode());
+        assertEquals("iTMS is busy", response.getBody());
+        assertEquals(2000, response.getRetryAfterMillis());
+    }
+
+    @Test
+    public void readsChunkedErrorBodies() throws Exception {
+        server.createContext("/chunked", exchange -> {
+            drain(exchange.getRequestBody());
+            exchange.sendResponseHeaders(500, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("first ".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                out.write("second".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        TransportResponse response = post(url("/chunked"), TIMEOUTS);
+
+        assertEquals(500, response.getCode());
+        assertEquals("first second", response.getBody());
+    }
+
+    @Test
+    public void reportsAnEarlyRejectionWithItsStatus() throws Exception {
+        // Far more than the socket buffers hold, the rejection arrives while the body is being sent.
+        File report = tmp.newFile("TEST-Huge.xml");
+        try (RandomAccessFile file = new RandomAccessFile(report, "rw")) {
+            file.setLength(64L * 1024 * 1024);
+        }
+        body = new MultipartReportBody(Collections.singletonMap("cycle_name", "Nightly"));
+        body.addReport(report.getName(), ReportContent.of(report), false);
+
+        try (ServerSocket rejecting = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread thread = new Thread(() -> {
+                try (Socket socket = rejecting.accept()) {
+                    readHead(socket.getInputStream());
+                    // Answers without reading the body and closes, as a proxy with a size limit does.
+                    socket.getOutputStream().write(("HTTP/1.1 413 Payload Too Large\r\nContent-Length: 9\r\n"
+                            + "Connection: close\r\n\r\nToo large").getBytes(StandardCharsets.US_ASCII));
+                    socket.getOutputStream().flush();
+                } catch (IOException e) {
+                    // The test fails on the client side.
+                }
+            });
+            thread.start();
+
+            TransportResponse response = post("http://127.0.0.1:" + rejecting.getLocalPort() + "/upload", TIMEOUTS);
+
+            assertEquals(413, response.getCode());
+            assertEquals("Too large", response.getBody());
+            thread.join();
+        }
+    }
+
+    @Test
+    public void failsWithoutProgress() throws Exception {
+        server.createContext("/stuck", exchange -> {
+            drain(exchange.getRequestBody());
+            sleep(3000);
+            exchange.close();
+        });
+
+        try {
+            post(url("/stuck"), new TransportTimeouts(1000, 500, 20000));
+            fail("No response expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+            assertTrue(e.getCause().getMessage().contains("No progress"));
+        }
+    }
+
+    @Test
+    public void failsAfterTheTotalBudget() throws Exception {
+        server.createContext("/slow", exchange -> {
+            drain(exchange.getRequestBody());
+            sleep(3000);
+            exchange.close();
+        });
+
+        long start = System.currentTimeMillis();
+        try {
+            post(url("/slow"), new TransportTimeouts(1000, 5000, 800));
+            fail("No response expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+            assertTrue(System.currentTimeMillis() - start < 2500);
+        }
+    }
+
+    @Test
+    public void leavesProxiedAddressesToTheHttpClient() throws IOException {
+        String proxyHost = System.getProperty("http.proxyHost");
+        String nonProxyHosts = System.getProperty("http.nonProxyHosts");
+        try {
+            System.setProperty("http.proxyHost", "proxy.invalid");
+            System.setProperty("http.nonProxyHosts", "localhost");
+            assertFalse(NioTransport.isApplicable("http://itms.example.com/api/test_results", body, false));
+
+            System.setProperty("http.nonProxyHosts", "localhost|*.example.com");
+            assertTrue(NioTransport.isApplicable("http://itms.example.com/api/test_results", body, false));
+        } finally {
+            restore("http.proxyHost", proxyHost);
+            restore("http.nonProxyHosts", nonProxyHosts);
+        }
+    }
+
+    @Test
+    public void leavesTlsAndCompressionToTheHttpClient() throws IOException {
+        assertFalse(NioTransport.isApplicable("https://127.0.0.1/upload", body, false));
+        assertFalse(NioTransport.isApplicable(url("/upload"), body, true));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private TransportResponse post(String url, TransportTimeouts timeouts) throws Exception {
+        RequestTimings timings = new RequestTimings();
+        timings.requestStarted();
+        return NioTransport.INSTANCE.post(url, "token", body, false, timeouts, timings).get(30, TimeUnit.SECONDS);
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        long count = 0;
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            count += read;
+        }
+        return count;
+    }
+
+    private static void readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0) {
+            head.write(b);
+            if (head.toString(StandardCharsets.US_ASCII.name()).endsWith("\r\n\r\n")) {
+                return;
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void restore(String property, String value) {
+        if (value != null) {
+            System.setProperty(property, value);
+        } else {
+            System.clearProperty(property);
+        }
+    }
+}
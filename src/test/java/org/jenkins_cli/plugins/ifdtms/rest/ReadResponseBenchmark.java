@@ -0,0 +1,59 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import hidden.jth.org.apache.http.HttpResponse;
+import hidden.jth.org.apache.http.HttpVersion;
+import hidden.jth.org.apache.http.entity.ByteArrayEntity;
+import hidden.jth.org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of iTMS response bodies by {@link RequestApi#readResponse}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadResponseBenchmark {
+
+    @Param({"100", "10240", "1048576"})
+    public int responseBytes;
+
+    private byte[] body;
+    private RequestApi requestApi;
+
+    @Setup
+    public void setUp() {
+        // A JSON error body made of short lines, like a validation error listing.
+        char[] line = new char[79];
+        Arrays.fill(line, 'x');
+        StringBuilder sb = new StringBuilder(responseBytes);
+        while (sb.length() < responseBytes) {
+            sb.append(line).append('\n');
+        }
+        body = sb.substring(0, responseBytes).getBytes(StandardCharsets.UTF_8);
+        requestApi = new RequestApi();
+    }
+
+    @Benchmark
+    public StandardResponse readResponse() {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 400, "Bad Request");
+        response.setEntity(new ByteArrayEntity(body));
+        return requestApi.readResponse(response);
+    }
+}
@@ -0,0 +1,94 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.jenkins_cli.plugins.ifdtms.benchmark.LoopbackSink;
+import org.jenkins_cli.plugins.ifdtms.benchmark.SyntheticReports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+
+/**
+ * Multipart encoding of a report and a whole report request against a loopback sink.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RequestApiBenchmark {
+
+    @Param({"1024", "1048576", "52428800", "524288000"})
+    public long reportBytes;
+
+    @Param({XML_FORMAT, JSON_FORMAT})
+    public String reportFormat;
+
+    private File report;
+    private LoopbackSink sink;
+    private RequestApi requestApi;
+    private Map<String, String> postData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        report = File.createTempFile("report", JSON_FORMAT.equals(reportFormat) ? ".json" : ".xml");
+        SyntheticReports.write(report, reportFormat, reportBytes);
+        sink = new LoopbackSink();
+        requestApi = new RequestApi(new RetryPolicy(0, 1, 1));
+        postData = new HashMap<>();
+        postData.put(USER_NAME_PARAM, "benchmark");
+        postData.put(SERVICE_NAME_PARAM, SERVICE_NAME);
+        postData.put(PROJECT_NAME_PARAM, "BENCH");
+        postData.put(TICKET_KEY_PARAM, "BENCH-1");
+        postData.put(CYCLE_NAME_PARAM, "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        sink.close();
+        Files.deleteIfExists(report.toPath());
+    }
+
+    private MultipartReportBody body() {
+        MultipartReportBody body = new MultipartReportBody(postData);
+        body.addReport(report.getName(), ReportContent.of(report), JSON_FORMAT.equals(reportFormat));
+        return body;
+    }
+
+    @Benchmark
+    public long encodeMultipart() throws IOException {
+        CountingOutputStream out = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        body().writeTo(out);
+        return out.getByteCount();
+    }
+
+    @Benchmark
+    public StandardResponse sendReport() {
+        return requestApi.sendReportToITMS(sink.getUrl(), "token", body(), COMPRESSION_NONE);
+    }
+
+    @Benchmark
+    public StandardResponse sendReportGzip() {
+        return requestApi.sendReportToITMS(sink.getUrl(), "token", body(), COMPRESSION_GZIP);
+    }
+}
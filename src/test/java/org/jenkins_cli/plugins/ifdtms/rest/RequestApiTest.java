@@ -0,0 +1,159 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestApiTest {
+
+    @Test
+    public void retriesShareOneTotalBudget() {
+        ScriptedTransport transport = new ScriptedTransport(attempt -> new TransportResponse(503, "Service Unavailable", "", -1));
+        RequestApi api = new RequestApi(new RetryPolicy(10, 200, 200))
+                .withTimeouts(new TransportTimeouts(1000, 1000, 500))
+                .withTransport(transport);
+
+        long start = System.currentTimeMillis();
+        StandardResponse response = api.sendReportToITMS(newServer(), "token", body(), COMPRESSION_NONE);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(503, response.getCode());
+        assertTrue("took " + elapsed + " ms", elapsed < 1000);
+        List<Long> budgets = transport.getTotalMillis();
+        assertTrue(budgets.size() > 1 && budgets.size() < 10);
+        for (int i = 1; i < budgets.size(); i++) {
+            assertTrue("budgets " + budgets, budgets.get(i) < budgets.get(i - 1));
+        }
+        assertTrue(budgets.get(0) <= 500);
+    }
+
+    @Test
+    public void stopsRetryingWhenTheDelayExceedsTheBudget() {
+        ScriptedTransport transport = new ScriptedTransport(attempt -> new TransportResponse(503, "Service Unavailable", "", 60_000));
+        RequestApi api = new RequestApi(new RetryPolicy(3, 1, 120_000))
+                .withTimeouts(new TransportTimeouts(1000, 1000, 5000))
+                .withTransport(transport);
+
+        long start = System.currentTimeMillis();
+        StandardResponse response = api.sendReportToITMS(newServer(), "token", body(), COMPRESSION_NONE);
+
+        assertEquals(503, response.getCode());
+        assertEquals(1, transport.getTotalMillis().size());
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void unsupportedMediaTypeSendsPlainBodies() {
+        ScriptedTransport transport = new ScriptedTransport(attempt -> attempt == 0
+                ? new TransportResponse(415, "Unsupported Media Type", "", -1) : new TransportResponse(200, "OK", "", -1));
+        RequestApi api = new RequestApi(RetryPolicy.NO_RETRY).withTransport(transport);
+        String server = newServer();
+
+        assertEquals(200, api.sendReportToITMS(server, "token", body(), COMPRESSION_AUTO).getCode());
+        assertEquals(200, api.sendReportToITMS(server, "token", body(), COMPRESSION_AUTO).getCode());
+
+        assertEquals(Arrays.asList(true, false, false), transport.getGzip());
+    }
+
+    @Test
+    public void badRequestAboutTheEncodingSendsPlainBodies() {
+        ScriptedTransport transport = new ScriptedTransport(attempt -> attempt == 0
+                ? new TransportResponse(400, "Bad Request", "Unsupported Content-Encoding: gzip", -1)
+                : new TransportResponse(200, "OK", "", -1));
+        RequestApi api = new RequestApi(RetryPolicy.NO_RETRY).withTransport(transport);
+
+        assertEquals(200, api.sendReportToITMS(newServer(), "token", body(), COMPRESSION_AUTO).getCode());
+
+        assertEquals(Arrays.asList(true, false), transport.getGzip());
+    }
+
+    @Test
+    public void otherClientErrorsKeepCompressing() {
+        ScriptedTransport transport = new ScriptedTransport(attempt -> attempt == 0
+                ? new TransportResponse(400, "Bad Request", "Unknown test cycle", -1)
+                : new TransportResponse(422, "Unprocessable Entity", "", -1));
+        RequestApi api = new RequestApi(RetryPolicy.NO_RETRY).withTransport(transport);
+        String server = newServer();
+
+        assertEquals(400, api.sendReportToITMS(server, "token", body(), COMPRESSION_AUTO).getCode());
+        assertEquals(422, api.sendReportToITMS(server, "token", body(), COMPRESSION_AUTO).getCode());
+
+        assertEquals(Arrays.asList(true, true), transport.getGzip());
+    }
+
+    @Test
+    public void gzipRejectionsAreForgottenOnInvalidation() {
+        ScriptedTransport transport = new ScriptedTransport(attempt -> attempt == 0
+                ? new TransportResponse(415, "Unsupported Media Type", "", -1) : new TransportResponse(200, "OK", "", -1));
+        RequestApi api = new RequestApi(RetryPolicy.NO_RETRY).withTransport(transport);
+        String server = newServer();
+
+        api.sendReportToITMS(server, "token", body(), COMPRESSION_AUTO);
+        RequestApi.invalidateGzipRejections();
+        api.sendReportToITMS(server, "token", body(), COMPRESSION_AUTO);
+
+        assertEquals(Arrays.asList(true, false, true), transport.getGzip());
+    }
+
+    static String newServer() {
+        // Every test gets its own circuit breaker.
+        return "http://itms-" + UUID.randomUUID() + ".invalid/api/test_results";
+    }
+
+    static MultipartReportBody body() {
+        MultipartReportBody body = new MultipartReportBody(Collections.singletonMap("name", "value"));
+        body.addReport("TEST-Suite.xml", ReportContent.of("<testsuite/>".getBytes()), false);
+        return body;
+    }
+
+    /**
+     * Answers each attempt as told, without any network.
+     */
+    static class ScriptedTransport implements ReportTransport {
+
+        private final Function<Integer, TransportResponse> responses;
+        private final List<Long> totalMillis = Collections.synchronizedList(new ArrayList<>());
+        private final List<Boolean> gzip = Collections.synchronizedList(new ArrayList<>());
+
+        ScriptedTransport(Function<Integer, TransportResponse> responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public CompletableFuture<TransportResponse> post(String url, String token, MultipartReportBody body, boolean gzip,
+                                                         TransportTimeouts timeouts, RequestTimings timings) {
+            this.gzip.add(gzip);
+            totalMillis.add(timeouts.getTotalMillis());
+            CompletableFuture<TransportResponse> response = new CompletableFuture<>();
+            TransportResponse answer = responses.apply(totalMillis.size() - 1);
+            if (answer != null) {
+                response.complete(answer);
+            } else {
+                response.completeExceptionally(new java.net.ConnectException("Connection refused"));
+            }
+            return response;
+        }
+
+        List<Boolean> getGzip() {
+            synchronized (gzip) {
+                return new ArrayList<>(gzip);
+            }
+        }
+
+        List<Long> getTotalMillis() {
+            synchronized (totalMillis) {
+                return new ArrayList<>(totalMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.jenkins_cli.plugins.ifdtms.rest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestLimiterTest {
+
+    @After
+    public void removeLimits() {
+        RequestLimiter.configure(0, 0);
+    }
+
+    @Test
+    public void everyPermitTakesAToken() throws Exception {
+        RequestLimiter.configure(5, 0);
+        RequestLimiter limiter = newLimiter();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire().close();
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 150);
+
+        // Closing the permits gives no token back, the sixth request waits for the bucket to refill.
+        RequestLimiter.Permit permit = limiter.acquire();
+        permit.close();
+        assertTrue("waited " + permit.getWaitMillis() + " ms", permit.getWaitMillis() >= 150);
+    }
+
+    @Test
+    public void reconfiguringKeepsCountingRequestsInFlight() throws Exception {
+        RequestLimiter.configure(0, 2);
+        String server = newServer();
+        RequestLimiter.Permit first = RequestLimiter.forServer(server).acquire();
+        RequestLimiter.Permit second = RequestLimiter.forServer(server).acquire();
+
+        RequestLimiter.configure(0, 3);
+        RequestLimiter limiter = RequestLimiter.forServer(server);
+        RequestLimiter.Permit third = limiter.acquire();
+        CompletableFuture<RequestLimiter.Permit> fourth = acquireAsync(limiter);
+        assertWaiting(fourth);
+        assertEquals(3, limiter.getInFlight());
+
+        first.close();
+        fourth.get(5, TimeUnit.SECONDS).close();
+        second.close();
+        third.close();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void raisingTheLimitReleasesWaitingCallers() throws Exception {
+        RequestLimiter.configure(0, 1);
+        RequestLimiter limiter = newLimiter();
+        RequestLimiter.Permit first = limiter.acquire();
+        CompletableFuture<RequestLimiter.Permit> second = acquireAsync(limiter);
+        assertWaiting(second);
+
+        RequestLimiter.configure(0, 2);
+        second.get(5, TimeUnit.SECONDS).close();
+        first.close();
+    }
+
+    @Test
+    public void closingTwiceReleasesOnce() throws Exception {
+        RequestLimiter.configure(0, 1);
+        RequestLimiter limiter = newLimiter();
+        RequestLimiter.Permit first = limiter.acquire();
+        first.close();
+        first.close();
+
+        RequestLimiter.Permit second = limiter.acquire();
+        CompletableFuture<RequestLimiter.Permit> third = acquireAsync(limiter);
+        assertWaiting(third);
+        second.close();
+        third.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    public void interruptedCallerLeavesTheQueue() throws Exception {
+        RequestLimiter.configure(0, 1);
+        RequestLimiter limiter = newLimiter();
+        RequestLimiter.Permit first = limiter.acquire();
+        CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire().close();
+                interrupted.complete(false);
+            } catch (InterruptedException e) {
+                interrupted.complete(true);
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+        waiter.interrupt();
+        assertTrue(interrupted.get(5, TimeUnit.SECONDS));
+
+        first.close();
+        CompletableFuture<RequestLimiter.Permit> next = acquireAsync(limiter);
+        next.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static RequestLimiter newLimiter() {
+        return RequestLimiter.forServer(newServer());
+    }
+
+    private static String newServer() {
+        return "http://itms-" + UUID.randomUUID() + ".invalid/api/test_results";
+    }
+
+    private static CompletableFuture<RequestLimiter.Permit> acquireAsync(RequestLimiter limiter) {
+        CompletableFuture<RequestLimiter.Permit> permit = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                permit.complete(limiter.acquire());
+            } catch (InterruptedException e) {
+                permit.completeExceptionally(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return permit;
+    }
+
+    private static void assertWaiting(CompletableFuture<RequestLimiter.Permit> permit) throws Exception {
+        try {
+            permit.get(200, TimeUnit.MILLISECONDS).close();
+            fail("Got a permit over the limit");
+        } catch (TimeoutException expected) {
+            assertFalse(permit.isDone());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CucumberReportFilterTest {
+
+    private static final byte[] SMALL = "small".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LARGE = new byte[4096];
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void keepsEmbeddings() throws IOException {
+        String report = report(embedding("image/png", LARGE));
+
+        assertEquals(report, filter(new CucumberReportFilter(EMBEDDINGS_KEEP, 1), report, null));
+    }
+
+    @Test
+    public void dropsEmbeddings() throws IOException {
+        String filtered = filter(new CucumberReportFilter(EMBEDDINGS_DROP, 1),
+                report(embedding("image/png", LARGE) + "," + embedding("text/plain", SMALL)), null);
+
+        assertFalse(filtered.contains("embeddings"));
+        assertTrue(filtered.contains("\"name\":\"a step\""));
+        assertTrue(filtered.contains("\"status\":\"passed\""));
+    }
+
+    @Test
+    public void capsLargeEmbeddings() throws IOException {
+        String filtered = filter(new CucumberReportFilter(EMBEDDINGS_CAP, 1024),
+                report(embedding("image/png", LARGE) + "," + embedding("text/plain", SMALL)), null);
+
+        assertFalse(filtered.contains(base64(LARGE)));
+        assertTrue(filtered.contains("\"mime_type\":\"text/plain\",\"data\":\""
+                + base64("[image/png of 4096 bytes removed]".getBytes(StandardCharsets.UTF_8)) + "\""));
+        assertTrue(filtered.contains("\"mime_type\":\"text/plain\",\"data\":\"" + base64(SMALL) + "\""));
+    }
+
+    @Test
+    public void linksEmbeddings() throws IOException {
+        File folder = new File(tmp.getRoot(), "embeddings");
+        CucumberReportFilter filter = new CucumberReportFilter(EMBEDDINGS_LINK, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int linked = filter.filter(new ByteArrayInputStream(report(embedding("image/png", LARGE) + ","
+                        + embedding("video/mp4", SMALL)).getBytes(StandardCharsets.UTF_8)), out, folder,
+                "http://jenkins/job/a/1/artifact/embeddings/");
+
+        assertEquals(2, linked);
+        assertArrayEquals(LARGE, Files.readAllBytes(new File(folder, "embedding-1.png").toPath()));
+        assertArrayEquals(SMALL, Files.readAllBytes(new File(folder, "embedding-2.mp4").toPath()));
+        String filtered = out.toString(StandardCharsets.UTF_8.name());
+        assertFalse(filtered.contains(base64(LARGE)));
+        assertTrue(filtered.contains("\"mime_type\":\"text/uri-list\",\"data\":\""
+                + base64("http://jenkins/job/a/1/artifact/embeddings/embedding-1.png".getBytes(StandardCharsets.UTF_8)) + "\""));
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnInvalidBase64() throws IOException {
+        filter(new CucumberReportFilter(EMBEDDINGS_CAP, 1024),
+                report("{\"mime_type\":\"image/png\",\"data\":\"not base64!\"}"), null);
+    }
+
+    static String report(String embeddings) {
+        return "[{\"name\":\"a feature\",\"elements\":[{\"name\":\"a scenario\",\"steps\":[{\"name\":\"a step\","
+                + "\"result\":{\"status\":\"passed\"},\"embeddings\":[" + embeddings + "]}]}]}]";
+    }
+
+    static String embedding(String mimeType, byte[] data) {
+        return "{\"mime_type\":\"" + mimeType + "\",\"data\":\"" + base64(data) + "\"}";
+    }
+
+    private static String base64(byte[] data) {
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    private static String filter(CucumberReportFilter filter, String report, File embeddingsFolder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.filter(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)), out, embeddingsFolder, "");
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+}
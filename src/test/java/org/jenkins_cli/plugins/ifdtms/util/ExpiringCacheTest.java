@@ -0,0 +1,52 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExpiringCacheTest {
+
+    @Test
+    public void putValuesExpire() throws Exception {
+        ExpiringCache<Boolean> cache = new ExpiringCache<>(10, 100);
+        cache.put("a", Boolean.TRUE);
+        assertEquals(Boolean.TRUE, cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+
+        Thread.sleep(200);
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void invalidateAllDropsPutValues() {
+        ExpiringCache<Boolean> cache = new ExpiringCache<>(10, 60_000);
+        cache.put("a", Boolean.TRUE);
+        cache.invalidateAll();
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void putValueIsReturnedWithoutLoading() throws Exception {
+        ExpiringCache<String> cache = new ExpiringCache<>(10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+        cache.put("a", "put");
+        assertEquals("put", cache.get("a", () -> "loaded " + loads.incrementAndGet()));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void failedLoadIsNotPresent() {
+        ExpiringCache<String> cache = new ExpiringCache<>(10, 60_000);
+        try {
+            cache.get("a", () -> {
+                throw new IllegalStateException("down");
+            });
+        } catch (Exception expected) {
+            // Not cached.
+        }
+        assertNull(cache.getIfPresent("a"));
+    }
+}
@@ -0,0 +1,103 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.jenkins_cli.plugins.ifdtms.model.ItmsConst.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JUnitReportFilterTest {
+
+    private static final String REPORT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<testsuite name=\"Suite\" tests=\"3\" failures=\"1\" errors=\"1\">"
+            + "<testcase classname=\"Suite\" name=\"passes\"><system-out>passing output</system-out></testcase>"
+            + "<testcase classname=\"Suite\" name=\"fails\"><failure message=\"expected\">trace</failure></testcase>"
+            + "<testcase classname=\"Suite\" name=\"errs\"><error message=\"boom\">trace</error></testcase>"
+            + "<system-out>0123456789</system-out>"
+            + "<system-err><![CDATA[abcdefghij]]></system-err>"
+            + "</testsuite>";
+
+    @Test
+    public void keepsTheReportByDefault() throws IOException {
+        String filtered = filter(new JUnitReportFilter(OUTPUT_KEEP, 4, false), REPORT);
+
+        assertTrue(filtered.contains("name=\"passes\""));
+        assertTrue(filtered.contains("passing output"));
+        assertTrue(filtered.contains("0123456789"));
+        assertTrue(filtered.contains("abcdefghij"));
+    }
+
+    @Test
+    public void failuresOnlyDropsPassingTestCases() throws IOException {
+        String filtered = filter(new JUnitReportFilter(OUTPUT_KEEP, 4, true), REPORT);
+
+        assertFalse(filtered.contains("name=\"passes\""));
+        assertFalse(filtered.contains("passing output"));
+        assertTrue(filtered.contains("<testcase classname=\"Suite\" name=\"fails\"><failure message=\"expected\">trace</failure></testcase>"));
+        assertTrue(filtered.contains("<testcase classname=\"Suite\" name=\"errs\"><error message=\"boom\">trace</error></testcase>"));
+        // Output of the suite itself is not part of a test case.
+        assertTrue(filtered.contains("0123456789"));
+    }
+
+    @Test
+    public void failuresOnlyKeepsTheSuiteCounts() throws IOException {
+        String filtered = filter(new JUnitReportFilter(OUTPUT_KEEP, 4, true), REPORT);
+
+        assertTrue(filtered.contains("tests=\"3\""));
+        assertTrue(filtered.contains("failures=\"1\""));
+        assertTrue(filtered.contains("errors=\"1\""));
+    }
+
+    @Test
+    public void truncatesOutput() throws IOException {
+        String filtered = filter(new JUnitReportFilter(OUTPUT_TRUNCATE, 4, false), REPORT);
+
+        assertTrue(filtered.contains("<system-out>0123\n[6 more characters truncated]</system-out>"));
+        assertTrue(filtered.contains("<system-err>abcd\n[6 more characters truncated]</system-err>"));
+        assertTrue(filtered.contains("<system-out>pass\n[10 more characters truncated]</system-out>"));
+    }
+
+    @Test
+    public void stripsOutput() throws IOException {
+        String filtered = filter(new JUnitReportFilter(OUTPUT_STRIP, 4, false), REPORT);
+
+        assertFalse(filtered.contains("system-out"));
+        assertFalse(filtered.contains("system-err"));
+        assertTrue(filtered.contains("name=\"passes\""));
+    }
+
+    @Test
+    public void writesUtf8WhateverTheInputEncoding() throws IOException {
+        String report = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><testsuite name=\"Caf\u00e9\"/>";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JUnitReportFilter(OUTPUT_KEEP, 4, false)
+                .filter(new ByteArrayInputStream(report.getBytes(StandardCharsets.ISO_8859_1)), out);
+
+        String filtered = out.toString(StandardCharsets.UTF_8.name());
+        assertTrue(filtered.contains("UTF-8"));
+        assertTrue(filtered.contains("Caf\u00e9"));
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnMalformedReports() throws IOException {
+        filter(new JUnitReportFilter(OUTPUT_KEEP, 4, false), "<testsuite><testcase></testsuite>");
+    }
+
+    @Test(expected = IOException.class)
+    public void refusesDoctypes() throws IOException {
+        filter(new JUnitReportFilter(OUTPUT_KEEP, 4, false), "<!DOCTYPE testsuite [<!ENTITY x SYSTEM \"file:///etc/passwd\">]>"
+                + "<testsuite name=\"&x;\"/>");
+    }
+
+    private static String filter(JUnitReportFilter filter, String report) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.filter(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)), out);
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+}
@@ -0,0 +1,180 @@
+package org.jenkins_cli.plugins.ifdtms.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReportSplitterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void splitsTestSuitesBetweenSuites() throws Exception {
+        StringBuilder report = new StringBuilder("<testsuites tests=\"4\" failures=\"1\" errors=\"0\">");
+        report.append(suite("First", "<testcase name=\"a\"/><testcase name=\"b\"><failure>f</failure></testcase>"));
+        report.append(suite("Second", "<testcase name=\"c\"/><testcase name=\"d\"/>"));
+        report.append("</testsuites>");
+
+        List<File> parts = split(report.toString(), 300);
+
+        assertEquals(2, parts.size());
+        Element first = parse(parts.get(0));
+        assertEquals("testsuites", first.getTagName());
+        assertCounts(first, 2, 1, 0);
+        assertEquals(1, first.getElementsByTagName("testsuite").getLength());
+        assertCounts(parse(parts.get(1)), 2, 0, 0);
+    }
+
+    @Test
+    public void splitsSingleTestSuiteByTestCase() throws Exception {
+        StringBuilder cases = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            cases.append("<testcase classname=\"Suite\" name=\"case").append(i).append("\">");
+            if (i == 3) {
+                cases.append("<failure message=\"expected\">trace</failure>");
+            } else if (i == 7) {
+                cases.append("<error message=\"boom\">trace</error>");
+            } else if (i == 8) {
+                cases.append("<skipped/>");
+            }
+            cases.append("<system-out>").append(repeat('x', 100)).append("</system-out></testcase>");
+        }
+        String report = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<testsuite name=\"Suite\" tests=\"10\" failures=\"1\" errors=\"1\" skipped=\"1\" time=\"1.5\">"
+                + cases + "</testsuite>";
+
+        List<File> parts = split(report, 600);
+
+        assertTrue("parts " + parts.size(), parts.size() > 2);
+        int tests = 0;
+        int failures = 0;
+        int errors = 0;
+        int skipped = 0;
+        for (File part : parts) {
+            assertTrue(part.length() <= 600);
+            Element root = parse(part);
+            assertEquals("testsuite", root.getTagName());
+            assertEquals("Suite", root.getAttribute("name"));
+            assertEquals("1.5", root.getAttribute("time"));
+            int partTests = root.getElementsByTagName("testcase").getLength();
+            assertEquals(partTests, Integer.parseInt(root.getAttribute("tests")));
+            assertEquals(root.getElementsByTagName("failure").getLength(), Integer.parseInt(root.getAttribute("failures")));
+            assertEquals(root.getElementsByTagName("error").getLength(), Integer.parseInt(root.getAttribute("errors")));
+            assertEquals(root.getElementsByTagName("skipped").getLength(), Integer.parseInt(root.getAttribute("skipped")));
+            tests += partTests;
+            failures += Integer.parseInt(root.getAttribute("failures"));
+            errors += Integer.parseInt(root.getAttribute("errors"));
+            skipped += Integer.parseInt(root.getAttribute("skipped"));
+        }
+        assertEquals(10, tests);
+        assertEquals(1, failures);
+        assertEquals(1, errors);
+        assertEquals(1, skipped);
+    }
+
+    @Test
+    public void copiesNamespacesIntoEveryPart() throws Exception {
+        String report = "<testsuites xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns:ci=\"urn:ci\""
+                + " xsi:noNamespaceSchemaLocation=\"junit.xsd\">"
+                + suite("First", "<testcase name=\"a\"><ci:attempt>1</ci:attempt></testcase>")
+                + suite("Second", "<testcase name=\"b\"><ci:attempt>2</ci:attempt></testcase>")
+                + "</testsuites>";
+
+        List<File> parts = split(report, 350);
+
+        assertEquals(2, parts.size());
+        for (File part : parts) {
+            Element root = parse(part);
+            assertEquals("junit.xsd",
+                    root.getAttributeNS("http://www.w3.org/2001/XMLSchema-instance", "noNamespaceSchemaLocation"));
+            assertEquals(1, root.getElementsByTagNameNS("urn:ci", "attempt").getLength());
+            assertCounts(root, 1, 0, 0);
+        }
+    }
+
+    @Test
+    public void keepsSmallSuiteWhole() throws Exception {
+        String report = "<testsuite name=\"Suite\" tests=\"1\"><testcase name=\"a\"/></testsuite>";
+
+        assertTrue(split(report, 40).isEmpty());
+    }
+
+    @Test
+    public void splitsCucumberReportBetweenFeatures() throws Exception {
+        String report = "[{\"name\":\"First\",\"elements\":[]},{\"name\":\"Second\",\"elements\":[]}]";
+
+        List<File> parts = split(report, 40, true);
+
+        assertEquals(2, parts.size());
+        assertEquals("[{\"name\":\"First\",\"elements\":[]}]", read(parts.get(0)));
+        assertEquals("[{\"name\":\"Second\",\"elements\":[]}]", read(parts.get(1)));
+    }
+
+    @Test
+    public void leavesNoScratchFilesBehind() throws Exception {
+        String report = "<testsuites>" + suite("First", "<testcase name=\"a\"/>") + suite("Second", "<testcase name=\"b\"/>")
+                + "</testsuites>";
+
+        List<File> parts = split(report, 150);
+
+        String[] files = parts.get(0).getParentFile().list();
+        assertEquals(parts.size(), files.length);
+        for (String file : files) {
+            assertFalse(file, file.endsWith(".tmp"));
+        }
+    }
+
+    private List<File> split(String report, long maxPartBytes) throws IOException {
+        return split(report, maxPartBytes, false);
+    }
+
+    private List<File> split(String report, long maxPartBytes, boolean isJsonReport) throws IOException {
+        File source = folder.newFile();
+        Files.write(source.toPath(), report.getBytes(StandardCharsets.UTF_8));
+        File target = new File(folder.newFolder(), isJsonReport ? "cucumber.json" : "TEST-Suite.xml");
+        return new ReportSplitter(maxPartBytes).split(source, target, isJsonReport);
+    }
+
+    private static String suite(String name, String cases) {
+        return "<testsuite name=\"" + name + "\">" + cases + "</testsuite>";
+    }
+
+    private static Element parse(File part) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(part);
+        return document.getDocumentElement();
+    }
+
+    private static void assertCounts(Element root, int tests, int failures, int errors) {
+        assertEquals(Integer.toString(tests), root.getAttribute("tests"));
+        assertEquals(Integer.toString(failures), root.getAttribute("failures"));
+        assertEquals(Integer.toString(errors), root.getAttribute("errors"));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(c);
+        }
+        return text.toString();
+    }
+}